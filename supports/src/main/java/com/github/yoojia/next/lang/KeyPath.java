@@ -0,0 +1,130 @@
+package com.github.yoojia.next.lang;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 预编译的多级KEY路径，如 "a.b.c"。KeyPath.of() 会缓存不含下标的路径的编译结果，重复查询同一路径时不再分割字符串。
+ * 非负整数的KEY在遇到 List 时作为下标，如 "items.3.price"；"*" 在 NextMap.iterate() 中匹配全部子节点。
+ *
+ * @author YOOJIA.CHEN (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+public final class KeyPath {
+
+    /**
+     * 缓存的路径数量上限，达到上限时清空缓存重新开始。读取缓存不加锁，多线程共享 NextMap 时不产生竞争。
+     */
+    private static final int MAX_CACHED = 1024;
+
+    private static final ConcurrentHashMap<String, KeyPath> CACHED = new ConcurrentHashMap<>();
+
+    public static final String WILDCARD = "*";
+
+    private static final KeyPath EMPTY = new KeyPath("", new String[0]);
+
+    private final String mKeyChain;
+    final String[] segments;
+    /**
+     * 各级KEY作为 List 下标的值，不是非负整数时为 -1
+     */
+    final int[] indexes;
+    final boolean[] wildcards;
+
+    private KeyPath(String keyChain, String[] segments) {
+        mKeyChain = keyChain;
+        this.segments = segments;
+        this.indexes = new int[segments.length];
+        this.wildcards = new boolean[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            indexes[i] = parseIndex(segments[i]);
+            wildcards[i] = WILDCARD.equals(segments[i]);
+        }
+    }
+
+    /**
+     * 获取KEY路径，优先使用缓存的编译结果
+     * @param keyChain 以 . 分隔的多级KEY
+     * @return KeyPath
+     */
+    public static KeyPath of(String keyChain){
+        if (keyChain == null || keyChain.isEmpty()) {
+            return EMPTY;
+        }
+        KeyPath path = CACHED.get(keyChain);
+        if (path == null) {
+            path = compile(keyChain);
+            // 带下标的路径通常由变量拼接而成，缓存命中率低，只编译不缓存
+            if (!path.hasIndex()) {
+                if (CACHED.size() >= MAX_CACHED) {
+                    CACHED.clear();
+                }
+                final KeyPath exists = CACHED.putIfAbsent(keyChain, path);
+                if (exists != null) {
+                    path = exists;
+                }
+            }
+        }
+        return path;
+    }
+
+    /**
+     * 编译KEY路径，不使用缓存
+     * @param keyChain 以 . 分隔的多级KEY
+     * @return KeyPath
+     */
+    public static KeyPath compile(String keyChain){
+        if (keyChain == null || keyChain.isEmpty()) {
+            return EMPTY;
+        }
+        final String[] segments = new String[NextTokenizer.count(keyChain, '.')];
+        final NextTokenizer tokenizer = new NextTokenizer().reset(keyChain, '.');
+        for (int i = 0; tokenizer.next(); i++) {
+            segments[i] = keyChain.substring(tokenizer.start(), tokenizer.end());
+        }
+        return new KeyPath(keyChain, segments);
+    }
+
+    private boolean hasIndex(){
+        for (int index : indexes) {
+            if (index >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size(){
+        return segments.length;
+    }
+
+    public String segment(int index){
+        return segments[index];
+    }
+
+    /**
+     * 解析作为 List 下标的KEY
+     * @param key KEY
+     * @return 下标，不是非负整数时返回 -1
+     */
+    static int parseIndex(String key){
+        final int length = key.length();
+        // int 最多 10 位数字
+        if (length == 0 || length > 10) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value > Integer.MAX_VALUE ? -1 : (int) value;
+    }
+
+    @Override
+    public String toString() {
+        return mKeyChain;
+    }
+}
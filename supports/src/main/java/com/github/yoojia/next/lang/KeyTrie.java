@@ -0,0 +1,215 @@
+package com.github.yoojia.next.lang;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多个KEY路径编译成的前缀树。通过 NextMap.get(KeyTrie) 只遍历一次源数据即可取出全部路径的值，
+ * 共同前缀部分只查询一次。KeyTrie 编译后不可修改，可以在多个线程中共享。
+ * 路径中不支持通配符 "*"，需要匹配全部子节点时使用 NextMap.iterate()。
+ *
+ * <pre>
+ * final KeyTrie trie = KeyTrie.builder()
+ *         .add("user.name", "")
+ *         .add("user.age", 0)
+ *         .build();
+ * final Object[] values = NextMap.use(source).get(trie);
+ * </pre>
+ *
+ * @author YOOJIA.CHEN (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+public final class KeyTrie {
+
+    private static final int[] NO_INDEXES = new int[0];
+
+    static final class Node {
+
+        final String key;
+        /**
+         * KEY作为 List 下标的值，不是非负整数时为 -1
+         */
+        final int index;
+        /**
+         * 在此节点结束的路径在结果数组中的位置
+         */
+        int[] indexes = NO_INDEXES;
+        Node[] children = new Node[0];
+
+        Node(String key) {
+            this.key = key;
+            this.index = KeyPath.parseIndex(key);
+        }
+
+        /**
+         * @param key KEY
+         * @return KEY对应的子节点，不存在时返回 null
+         */
+        Node find(String key){
+            for (Node child : children) {
+                if (child.key.equals(key)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @param index List 下标
+         * @return 下标对应的子节点，不存在时返回 null
+         */
+        Node find(int index){
+            for (Node child : children) {
+                if (child.index == index) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        Node child(String key){
+            for (Node child : children) {
+                if (child.key.equals(key)) {
+                    return child;
+                }
+            }
+            final Node child = new Node(key);
+            final Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, children.length);
+            grown[children.length] = child;
+            children = grown;
+            return child;
+        }
+
+        void addIndex(int index){
+            final int[] grown = new int[indexes.length + 1];
+            System.arraycopy(indexes, 0, grown, 0, indexes.length);
+            grown[indexes.length] = index;
+            indexes = grown;
+        }
+    }
+
+    final Node root;
+    private final String[] mKeyChains;
+    private final Object[] mDefValues;
+
+    private KeyTrie(Node root, String[] keyChains, Object[] defValues) {
+        this.root = root;
+        mKeyChains = keyChains;
+        mDefValues = defValues;
+    }
+
+    /**
+     * @return 路径数量，即结果数组的长度
+     */
+    public int size(){
+        return mKeyChains.length;
+    }
+
+    public String keyChain(int index){
+        return mKeyChains[index];
+    }
+
+    public Object defValue(int index){
+        return mDefValues[index];
+    }
+
+    /**
+     * 从源数据中取出全部路径的值，不存在的路径使用默认值
+     * @param source 源数据
+     * @param output 结果数组
+     */
+    void extract(Object source, Object[] output){
+        fillDefaults(output);
+        if (source != null) {
+            fill(root, source, output, null);
+        }
+    }
+
+    void fillDefaults(Object[] output){
+        System.arraycopy(mDefValues, 0, output, 0, mDefValues.length);
+    }
+
+    /**
+     * 将节点及其子节点对应路径的值写入结果数组
+     * @param node 节点
+     * @param value 节点对应的值
+     * @param output 结果数组
+     * @param resolved 记录已取得值的路径，可以为 null
+     * @return 本次新取得值的路径数量
+     */
+    static int fill(Node node, Object value, Object[] output, boolean[] resolved){
+        int count = 0;
+        for (int index : node.indexes) {
+            output[index] = value;
+            if (resolved != null && !resolved[index]) {
+                resolved[index] = true;
+                count++;
+            }
+        }
+        if (node.children.length == 0 || !(value instanceof Map || value instanceof List)) {
+            return count;
+        }
+        for (Node child : node.children) {
+            final Object childValue = NextMap.child(value, child.key, child.index);
+            if (childValue != null) {
+                count += fill(child, childValue, output, resolved);
+            }
+        }
+        return count;
+    }
+
+    public static Builder builder(){
+        return new Builder();
+    }
+
+    public static final class Builder {
+
+        private final List<String> mKeyChains = new ArrayList<>();
+        private final List<Object> mDefValues = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder add(String keyChain){
+            return add(keyChain, null);
+        }
+
+        /**
+         * 添加查询路径
+         * @param keyChain 以 . 分隔的多级KEY
+         * @param defValue 路径不存在时的默认值
+         * @return Builder
+         */
+        public Builder add(String keyChain, Object defValue){
+            mKeyChains.add(keyChain);
+            mDefValues.add(defValue);
+            return this;
+        }
+
+        /**
+         * 编译全部查询路径
+         * @return KeyTrie
+         * @throws IllegalArgumentException 路径中包含通配符 "*"
+         */
+        public KeyTrie build(){
+            final Node root = new Node("");
+            final int size = mKeyChains.size();
+            for (int i = 0; i < size; i++) {
+                final KeyPath path = KeyPath.compile(mKeyChains.get(i));
+                Node node = root;
+                for (int j = 0; j < path.segments.length; j++) {
+                    if (path.wildcards[j]) {
+                        throw new IllegalArgumentException("Wildcard is not supported by KeyTrie: " + mKeyChains.get(i));
+                    }
+                    node = node.child(path.segments[j]);
+                }
+                node.addIndex(i);
+            }
+            return new KeyTrie(root,
+                    mKeyChains.toArray(new String[size]),
+                    mDefValues.toArray(new Object[size]));
+        }
+    }
+}
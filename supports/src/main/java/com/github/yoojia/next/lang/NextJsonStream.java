@@ -0,0 +1,168 @@
+package com.github.yoojia.next.lang;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 直接从 JSON 数据流中取出多个路径的值，不需要先把整个 JSON 解析成 Map。
+ * 没有被查询的子树会被跳过，全部路径都取得值后立即停止读取。
+ * 只有被查询路径对应的值会被解析成对象：对象解析为 Map，数组解析为 List，
+ * 整数解析为 Long，其它数值解析为 Double。路径中的非负整数KEY在遇到数组时作为下标。
+ *
+ * <pre>
+ * final Object[] values = NextJsonStream.use(reader).get(trie);
+ * </pre>
+ *
+ * @author YOOJIA.CHEN (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+public class NextJsonStream {
+
+    private final JsonReader mReader;
+
+    private NextJsonStream(JsonReader reader) {
+        mReader = reader;
+    }
+
+    /**
+     * 从数据流中取出多个路径的值。读取结束后不会关闭数据流。
+     * @param trie 编译后的多个KEY路径
+     * @return 按路径添加顺序排列的值，不存在的路径为其默认值
+     * @throws IOException 读取数据流出错，或者 JSON 格式错误
+     */
+    public Object[] get(KeyTrie trie) throws IOException {
+        return get(trie, new Object[trie.size()]);
+    }
+
+    public Object[] get(KeyTrie trie, Object[] output) throws IOException {
+        if (output.length < trie.size()) {
+            throw new IllegalArgumentException("Output array is too small, required: " + trie.size());
+        }
+        trie.fillDefaults(output);
+        final int size = trie.size();
+        if (size > 0) {
+            read(trie.root, output, new boolean[size], size);
+        }
+        return output;
+    }
+
+    /**
+     * 读取节点对应的值
+     * @return 剩余未取得值的路径数量
+     */
+    private int read(KeyTrie.Node node, Object[] output, boolean[] resolved, int remaining) throws IOException {
+        if (mReader.peek() == JsonToken.NULL) {
+            mReader.nextNull();
+            return remaining;
+        }
+        // 路径在此节点结束，需要完整解析这个值
+        if (node.indexes.length > 0) {
+            return remaining - KeyTrie.fill(node, readValue(), output, resolved);
+        }
+        final JsonToken token = mReader.peek();
+        if (token == JsonToken.BEGIN_ARRAY) {
+            return readArray(node, output, resolved, remaining);
+        }
+        if (token != JsonToken.BEGIN_OBJECT) {
+            mReader.skipValue();
+            return remaining;
+        }
+        mReader.beginObject();
+        while (mReader.hasNext()) {
+            final KeyTrie.Node child = node.find(mReader.nextName());
+            if (child == null) {
+                mReader.skipValue();
+                continue;
+            }
+            remaining = read(child, output, resolved, remaining);
+            if (remaining == 0) {
+                // 全部路径已取得值，不再读取剩余数据
+                return 0;
+            }
+        }
+        mReader.endObject();
+        return remaining;
+    }
+
+    /**
+     * 读取数组，只解析被查询下标的元素
+     * @return 剩余未取得值的路径数量
+     */
+    private int readArray(KeyTrie.Node node, Object[] output, boolean[] resolved, int remaining) throws IOException {
+        mReader.beginArray();
+        int index = 0;
+        while (mReader.hasNext()) {
+            final KeyTrie.Node child = node.find(index++);
+            if (child == null) {
+                mReader.skipValue();
+                continue;
+            }
+            remaining = read(child, output, resolved, remaining);
+            if (remaining == 0) {
+                return 0;
+            }
+        }
+        mReader.endArray();
+        return remaining;
+    }
+
+    private Object readValue() throws IOException {
+        switch (mReader.peek()) {
+            case BEGIN_OBJECT:
+                final Map<String, Object> map = new LinkedHashMap<>();
+                mReader.beginObject();
+                while (mReader.hasNext()) {
+                    map.put(mReader.nextName(), readValue());
+                }
+                mReader.endObject();
+                return map;
+            case BEGIN_ARRAY:
+                final List<Object> list = new ArrayList<>();
+                mReader.beginArray();
+                while (mReader.hasNext()) {
+                    list.add(readValue());
+                }
+                mReader.endArray();
+                return list;
+            case BOOLEAN:
+                return mReader.nextBoolean();
+            case NUMBER:
+                return parseNumber(mReader.nextString());
+            case NULL:
+                mReader.nextNull();
+                return null;
+            default:
+                return mReader.nextString();
+        }
+    }
+
+    private static Number parseNumber(String number){
+        for (int i = 0; i < number.length(); i++) {
+            final char c = number.charAt(i);
+            if (c == '.' || c == 'e' || c == 'E') {
+                return Double.valueOf(number);
+            }
+        }
+        try {
+            return Long.valueOf(number);
+        } catch (NumberFormatException e) {
+            // 超出 long 范围的整数
+            return Double.valueOf(number);
+        }
+    }
+
+    public static NextJsonStream use(JsonReader reader){
+        return new NextJsonStream(reader);
+    }
+
+    public static NextJsonStream use(Reader reader){
+        return new NextJsonStream(new JsonReader(reader));
+    }
+}
@@ -2,54 +2,246 @@ package com.github.yoojia.next.lang;
 
 import android.text.TextUtils;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 /**
+ * 多级KEY的Map查询工具。NextMap 不保存查询状态，同一个对象可以在多个线程中共享查询，
+ * 前提是查询期间源数据不被修改。
+ *
  * @author YOOJIA.CHEN (yoojia.chen@gmail.com)
  * @version 2015-08-16
  */
 public class NextMap {
 
-    private Object mPreValue;
     private final Map<String, Object> mSource;
 
+    /**
+     * 完整路径到值的扁平索引，未建立索引时为 null
+     */
+    private volatile Map<String, Object> mIndex;
+    private volatile long mIndexMemoryUsage;
+
     private NextMap(Map<String, Object> source) {
         this.mSource = source;
-        this.mPreValue = source;
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * 为源数据中全部路径建立扁平索引，之后的查询只需要一次哈希查找。适用于多次读取但很少修改的数据。
+     * 源数据修改后需要调用 rebuildIndex() 或 invalidateIndex()。
+     * @return NextMap
+     */
+    public NextMap rebuildIndex(){
+        final Map<String, Object> index = new HashMap<>();
+        final long usage = index(mSource, new StringBuilder(), index);
+        mIndex = index;
+        mIndexMemoryUsage = usage;
+        return this;
+    }
+
+    /**
+     * 删除扁平索引，之后的查询逐级遍历源数据
+     */
+    public void invalidateIndex(){
+        mIndex = null;
+        mIndexMemoryUsage = 0;
+    }
+
+    public boolean isIndexed(){
+        return mIndex != null;
+    }
+
+    /**
+     * @return 扁平索引估算占用的内存字节数，不包括值对象本身
+     */
+    public long indexMemoryUsage(){
+        return mIndexMemoryUsage;
+    }
+
     public Object get(String keyChain, Object defValue){
-        mPreValue = mSource; // reset
-        final List<String> keys = split(keyChain, '.');
-        final List<String> _keyChain = new ArrayList<>();
-        for (String key : keys) {
-            _keyChain.add(key);
+        return get(KeyPath.of(keyChain), defValue);
+    }
+
+    public Object get(KeyPath keyPath, Object defValue){
+        final Map<String, Object> index = mIndex;
+        if (index != null) {
+            final Object value = index.get(keyPath.toString());
+            if (value != null) {
+                return value;
+            }
+            // 索引只包含规范形式的路径，未命中时按普通方式查询
         }
-        final int deep = _keyChain.size();
+        // 遍历状态只保存在局部变量中，查询可以在多个线程中并发执行
+        Object value = mSource;
+        final String[] keys = keyPath.segments;
+        final int deep = keys.length;
         for (int i = 0; i < deep; i++) {
-            final String keyOnLevel = _keyChain.get(i);
-            if(mPreValue == null) {
+            if (value == null) {
                 break;
             }
-            if (Map.class.isAssignableFrom(mPreValue.getClass())){
-                final Map<String, Object> map = (Map<String, Object>) mPreValue;
-                mPreValue = map.get(keyOnLevel);
+            if (value instanceof Map || value instanceof List) {
+                value = child(value, keys[i], keyPath.indexes[i]);
             }else{
-                if(i < deep) {
-                    return defValue;
-                }
+                return defValue;
             }
         }
-        return mPreValue == null ? defValue : mPreValue;
+        return value == null ? defValue : value;
+    }
+
+    /**
+     * 惰性遍历路径匹配的全部值，路径中的 "*" 匹配 Map 的全部值或 List 的全部元素。
+     * 遍历过程不复制源数据，每次调用 next() 时才查找下一个值；值为 null 的节点会被跳过。
+     * @param keyChain 以 . 分隔的多级KEY，如 "items.*.price"
+     * @return 匹配值的迭代器
+     */
+    public Iterable<Object> iterate(String keyChain){
+        return iterate(KeyPath.of(keyChain));
+    }
+
+    public Iterable<Object> iterate(final KeyPath keyPath){
+        return new Iterable<Object>() {
+            @Override public Iterator<Object> iterator() {
+                return new PathIterator(mSource, keyPath);
+            }
+        };
+    }
+
+    /**
+     * 获取 Map 或 List 节点的子节点
+     * @param node 节点
+     * @param key KEY
+     * @param index KEY作为 List 下标的值
+     * @return 子节点，不存在时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    static Object child(Object node, String key, int index){
+        if (node instanceof Map) {
+            return ((Map<String, Object>) node).get(key);
+        }else if (node instanceof List) {
+            final List<Object> list = (List<Object>) node;
+            return (index >= 0 && index < list.size()) ? list.get(index) : null;
+        }else{
+            return null;
+        }
     }
 
     public <T> T getTyped(String keyChain, T defValue){
         return (T) get(keyChain, defValue);
     }
 
+    /**
+     * 一次遍历取出多个路径的值
+     * @param trie 编译后的多个KEY路径
+     * @return 按路径添加顺序排列的值，不存在的路径为其默认值
+     */
+    public Object[] get(KeyTrie trie){
+        return get(trie, new Object[trie.size()]);
+    }
+
+    /**
+     * 一次遍历取出多个路径的值，写入到可复用的结果数组中
+     * @param trie 编译后的多个KEY路径
+     * @param output 结果数组，长度不能小于路径数量
+     * @return 结果数组
+     */
+    public Object[] get(KeyTrie trie, Object[] output){
+        if (output.length < trie.size()) {
+            throw new IllegalArgumentException("Output array is too small, required: " + trie.size());
+        }
+        trie.extract(mSource, output);
+        return output;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getTyped(KeyPath keyPath, T defValue){
+        return (T) get(keyPath, defValue);
+    }
+
+    /**
+     * 读取 int 值。Number 类型和数字字符串按相同的规则转换：小数截断取整，超出 int 范围时返回默认值；
+     * 其它类型或无法解析时返回默认值。
+     * @param keyChain 以 . 分隔的多级KEY
+     * @param defValue 默认值
+     * @return int 值
+     */
+    public int getInt(String keyChain, int defValue){
+        return getInt(KeyPath.of(keyChain), defValue);
+    }
+
+    public int getInt(KeyPath keyPath, int defValue){
+        return (int) toLong(get(keyPath, null), Integer.MIN_VALUE, Integer.MAX_VALUE, defValue);
+    }
+
+    /**
+     * 读取 long 值。转换规则与 getInt() 相同，超出 long 范围时返回默认值。
+     * @param keyChain 以 . 分隔的多级KEY
+     * @param defValue 默认值
+     * @return long 值
+     */
+    public long getLong(String keyChain, long defValue){
+        return getLong(KeyPath.of(keyChain), defValue);
+    }
+
+    public long getLong(KeyPath keyPath, long defValue){
+        return toLong(get(keyPath, null), Long.MIN_VALUE, Long.MAX_VALUE, defValue);
+    }
+
+    public double getDouble(String keyChain, double defValue){
+        return getDouble(KeyPath.of(keyChain), defValue);
+    }
+
+    public double getDouble(KeyPath keyPath, double defValue){
+        final Object value = get(keyPath, null);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof CharSequence) {
+            final CharSequence text = (CharSequence) value;
+            // 15 位以内的整数可以精确表示，不需要调用 Double.parseDouble()
+            if (text.length() <= 15 && isInteger(text)) {
+                return parseLong(text, 0);
+            }
+            if (isDecimal(text)) {
+                return Double.parseDouble(text.toString());
+            }
+        }
+        return defValue;
+    }
+
+    /**
+     * 读取 boolean 值。Number 类型不等于 0 时为 true，字符串只接受 "true" 和 "false"（不区分大小写）。
+     * @param keyChain 以 . 分隔的多级KEY
+     * @param defValue 默认值
+     * @return boolean 值
+     */
+    public boolean getBoolean(String keyChain, boolean defValue){
+        return getBoolean(KeyPath.of(keyChain), defValue);
+    }
+
+    public boolean getBoolean(KeyPath keyPath, boolean defValue){
+        final Object value = get(keyPath, null);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue() != 0;
+        }
+        if (value instanceof CharSequence) {
+            final CharSequence text = (CharSequence) value;
+            if (regionEquals(text, "true")) {
+                return true;
+            }
+            if (regionEquals(text, "false")) {
+                return false;
+            }
+        }
+        return defValue;
+    }
+
     public String getString(String keyChain, String defValue){
         return getTyped(keyChain, defValue);
     }
@@ -58,25 +250,219 @@ public class NextMap {
         return (String) getTyped(keyChain, null);
     }
 
-    public static List<String> split(String input, char splitterChar) {
-        final List<String> segments = new ArrayList<>();
-        if (TextUtils.isEmpty(input)) {
-            return segments;
-        }else{
-            int index = 0;
-            int preIndex = index;
-            while ((index = input.indexOf(splitterChar, index)) != -1) {
-                if (preIndex != index) {
-                    segments.add(input.substring(preIndex, index));
-                }
-                index++;
-                preIndex = index;
+    /**
+     * 递归建立索引
+     * @return 索引估算占用的内存字节数
+     */
+    private static long index(Map<String, Object> map, StringBuilder prefix, Map<String, Object> index){
+        long usage = 0;
+        final int prefixLength = prefix.length();
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            final Object rawKey = entry.getKey();
+            final Object value = entry.getValue();
+            // 包含分隔符的KEY无法通过路径访问
+            if (!(rawKey instanceof String) || value == null || ((String) rawKey).indexOf('.') >= 0) {
+                continue;
+            }
+            if (prefixLength > 0) {
+                prefix.append('.');
+            }
+            prefix.append((String) rawKey);
+            final String path = prefix.toString();
+            index.put(path, value);
+            // 约 32 字节的哈希表节点，加上路径字符串
+            usage += 32 + 40 + 2 * path.length();
+            usage += indexChildren(value, prefix, index);
+            prefix.setLength(prefixLength);
+        }
+        return usage;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long indexChildren(Object value, StringBuilder prefix, Map<String, Object> index){
+        if (value instanceof Map) {
+            return index((Map<String, Object>) value, prefix, index);
+        }
+        if (!(value instanceof List)) {
+            return 0;
+        }
+        long usage = 0;
+        final int prefixLength = prefix.length();
+        final List<Object> list = (List<Object>) value;
+        final int size = list.size();
+        for (int i = 0; i < size; i++) {
+            final Object item = list.get(i);
+            if (item == null) {
+                continue;
+            }
+            prefix.append('.').append(i);
+            final String path = prefix.toString();
+            index.put(path, item);
+            usage += 32 + 40 + 2 * path.length();
+            usage += indexChildren(item, prefix, index);
+            prefix.setLength(prefixLength);
+        }
+        return usage;
+    }
+
+    /**
+     * 将 Number 或数字字符串转换为 [min, max] 范围内的整数。小数截断取整，超出范围或无法转换时返回默认值。
+     */
+    private static long toLong(Object value, long min, long max, long defValue){
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            final long parsed = ((Number) value).longValue();
+            return parsed >= min && parsed <= max ? parsed : defValue;
+        }
+        if (value instanceof BigInteger) {
+            final BigInteger big = (BigInteger) value;
+            if (big.bitLength() >= 64) {
+                return defValue;
+            }
+            final long parsed = big.longValue();
+            return parsed >= min && parsed <= max ? parsed : defValue;
+        }
+        if (value instanceof Number) {
+            return truncate(((Number) value).doubleValue(), min, max, defValue);
+        }
+        if (value instanceof CharSequence) {
+            final CharSequence text = (CharSequence) value;
+            if (isInteger(text)) {
+                // 超出 long 范围时 parseLong() 返回默认值
+                final long parsed = parseLong(text, defValue);
+                return parsed >= min && parsed <= max ? parsed : defValue;
+            }
+            if (isDecimal(text)) {
+                return truncate(Double.parseDouble(text.toString()), min, max, defValue);
+            }
+        }
+        return defValue;
+    }
+
+    private static long truncate(double value, long min, long max, long defValue){
+        // 按截断后的值判断范围；max + 1 可以精确表示为 double，NaN 和无穷大不在范围内
+        if (value < (double) max + 1.0 && Math.ceil(value) >= min) {
+            return (long) value;
+        }
+        return defValue;
+    }
+
+    /**
+     * 解析整数字符串，不抛出异常
+     * @param text 字符串
+     * @param defValue 不是整数或超出 long 范围时的返回值
+     * @return 解析结果
+     */
+    private static long parseLong(CharSequence text, long defValue){
+        final int length = text.length();
+        if (length == 0) {
+            return defValue;
+        }
+        int i = 0;
+        final boolean negative = text.charAt(0) == '-';
+        if (negative || text.charAt(0) == '+') {
+            i++;
+        }
+        if (i == length) {
+            return defValue;
+        }
+        // 按负数累加，Long.MIN_VALUE 也不会溢出
+        long result = 0;
+        for (; i < length; i++) {
+            final int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return defValue;
+            }
+            if (result < (Long.MIN_VALUE + digit) / 10) {
+                return defValue;
+            }
+            result = result * 10 - digit;
+        }
+        if (negative) {
+            return result;
+        }
+        return result == Long.MIN_VALUE ? defValue : -result;
+    }
+
+    private static boolean isInteger(CharSequence text){
+        final int length = text.length();
+        int i = (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) ? 1 : 0;
+        final int start = i;
+        while (i < length && isDigit(text.charAt(i))) {
+            i++;
+        }
+        return i > start && i == length;
+    }
+
+    /**
+     * @return 是否为 [+-]digits[.digits][(e|E)[+-]digits] 格式的十进制数
+     */
+    private static boolean isDecimal(CharSequence text){
+        final int length = text.length();
+        int i = (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) ? 1 : 0;
+        int digits = 0;
+        while (i < length && isDigit(text.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < length && text.charAt(i) == '.') {
+            i++;
+            while (i < length && isDigit(text.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < length && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+                i++;
             }
-            if (preIndex < input.length()) {
-                segments.add(input.substring(preIndex));
+            final int start = i;
+            while (i < length && isDigit(text.charAt(i))) {
+                i++;
             }
-            return segments;
+            if (i == start) {
+                return false;
+            }
+        }
+        return i == length;
+    }
+
+    private static boolean isDigit(char c){
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean regionEquals(CharSequence text, String expected){
+        final int length = expected.length();
+        if (text.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (Character.toLowerCase(text.charAt(i)) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 分割字符串，忽略空片段。需要在循环中分割字符串时，使用 NextTokenizer 可以避免创建列表和子字符串。
+     * @param input 输入字符串
+     * @param splitterChar 分隔符
+     * @return 片段列表
+     */
+    public static List<String> split(String input, char splitterChar) {
+        if (TextUtils.isEmpty(input)) {
+            return new ArrayList<>(0);
+        }
+        final List<String> segments = new ArrayList<>(NextTokenizer.count(input, splitterChar));
+        final NextTokenizer tokenizer = new NextTokenizer().reset(input, splitterChar);
+        while (tokenizer.next()) {
+            segments.add(input.substring(tokenizer.start(), tokenizer.end()));
         }
+        return segments;
     }
 
     public static NextMap use(Map<String, Object> source){
@@ -20,6 +20,17 @@ public class NextString {
         return uri;
     }
 
+    /**
+     * 连接多级路径。与 connect() 不同，按 NextUrlBuilder.path() 的规则处理：
+     * 各级路径前后的 "/" 规范为一个，空路径被忽略。
+     * @param root 根路径
+     * @param paths 各级路径
+     * @return 连接结果
+     */
+    public static String connectAll(String root, String...paths){
+        return new NextUrlBuilder().reset(root).path(paths).build();
+    }
+
     public static boolean isEmpty(CharSequence...inputs) {
         for (CharSequence input : inputs) {
             if (!TextUtils.isEmpty(input)) {
@@ -0,0 +1,207 @@
+package com.github.yoojia.next.lang;
+
+/**
+ * 可复用的字符串分割游标。分割过程只记录片段在原字符串中的起止位置，不创建子字符串；
+ * 空片段会被跳过，与 NextMap.split() 的结果一致。
+ * NextTokenizer 保存遍历状态，不能在多个线程中共享，在循环中可以通过 reset() 重复使用同一个对象。
+ *
+ * <pre>
+ * final NextTokenizer tokenizer = new NextTokenizer();
+ * tokenizer.reset("a.b.c", '.');
+ * while (tokenizer.next()) {
+ *     use(tokenizer.start(), tokenizer.end());
+ * }
+ * </pre>
+ *
+ * @author YOOJIA.CHEN (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+public final class NextTokenizer {
+
+    /**
+     * 片段回调
+     */
+    public interface OnTokenListener {
+        /**
+         * @param input 原字符串
+         * @param start 片段起始位置（包含）
+         * @param end 片段结束位置（不包含）
+         */
+        void onToken(CharSequence input, int start, int end);
+    }
+
+    private final Token mToken = new Token();
+
+    private CharSequence mInput = "";
+    private char mSplitter;
+    private int mPosition;
+    private int mStart;
+    private int mEnd;
+
+    /**
+     * 设置新的输入字符串并回到起始位置
+     * @param input 输入字符串，null 视为空字符串
+     * @param splitter 分隔符
+     * @return NextTokenizer
+     */
+    public NextTokenizer reset(CharSequence input, char splitter){
+        mInput = input == null ? "" : input;
+        mSplitter = splitter;
+        mPosition = 0;
+        mStart = 0;
+        mEnd = 0;
+        return this;
+    }
+
+    /**
+     * 移动到下一个非空片段
+     * @return 是否还有片段
+     */
+    public boolean next(){
+        final CharSequence input = mInput;
+        final int length = input.length();
+        int index = mPosition;
+        while (index < length && input.charAt(index) == mSplitter) {
+            index++;
+        }
+        if (index >= length) {
+            mPosition = length;
+            mStart = length;
+            mEnd = length;
+            return false;
+        }
+        final int start = index;
+        while (index < length && input.charAt(index) != mSplitter) {
+            index++;
+        }
+        mStart = start;
+        mEnd = index;
+        mPosition = index;
+        return true;
+    }
+
+    public int start(){
+        return mStart;
+    }
+
+    public int end(){
+        return mEnd;
+    }
+
+    /**
+     * @return 当前片段的视图，调用 next() 或 reset() 后内容随之改变，需要保存时请使用 tokenString()
+     */
+    public CharSequence token(){
+        return mToken;
+    }
+
+    /**
+     * @return 当前片段的字符串副本
+     */
+    public String tokenString(){
+        return mInput.subSequence(mStart, mEnd).toString();
+    }
+
+    /**
+     * 当前片段与指定字符串比较，不创建子字符串
+     * @param expected 指定字符串
+     * @return 是否相同
+     */
+    public boolean tokenEquals(CharSequence expected){
+        final int length = mEnd - mStart;
+        if (expected.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (mInput.charAt(mStart + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 统计非空片段数量
+     * @param input 输入字符串
+     * @param splitter 分隔符
+     * @return 片段数量
+     */
+    public static int count(CharSequence input, char splitter){
+        if (input == null) {
+            return 0;
+        }
+        final int length = input.length();
+        int count = 0;
+        boolean inToken = false;
+        for (int i = 0; i < length; i++) {
+            if (input.charAt(i) == splitter) {
+                inToken = false;
+            }else if (!inToken) {
+                inToken = true;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 依次回调每个非空片段的起止位置
+     * @param input 输入字符串
+     * @param splitter 分隔符
+     * @param listener 回调
+     * @return 片段数量
+     */
+    public static int forEach(CharSequence input, char splitter, OnTokenListener listener){
+        if (input == null) {
+            return 0;
+        }
+        final int length = input.length();
+        int count = 0;
+        int start = -1;
+        for (int i = 0; i < length; i++) {
+            if (input.charAt(i) == splitter) {
+                if (start >= 0) {
+                    listener.onToken(input, start, i);
+                    count++;
+                    start = -1;
+                }
+            }else if (start < 0) {
+                start = i;
+            }
+        }
+        if (start >= 0) {
+            listener.onToken(input, start, length);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 当前片段的视图，不复制字符
+     */
+    private final class Token implements CharSequence {
+
+        @Override
+        public int length() {
+            return mEnd - mStart;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= mEnd - mStart) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", length: " + (mEnd - mStart));
+            }
+            return mInput.charAt(mStart + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return mInput.subSequence(mStart + start, mStart + end);
+        }
+
+        @Override
+        public String toString() {
+            return tokenString();
+        }
+    }
+}
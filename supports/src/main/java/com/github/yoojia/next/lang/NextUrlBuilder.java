@@ -0,0 +1,202 @@
+package com.github.yoojia.next.lang;
+
+import java.io.IOException;
+
+/**
+ * URL 构建器。多级路径之间只保留一个 "/"，查询参数按 UTF-8 进行百分号编码。
+ * 全部内容直接写入同一个 StringBuilder，调用 reset() 后可以重复使用，不产生中间字符串。
+ * NextUrlBuilder 保存构建状态，不能在多个线程中共享。
+ *
+ * <pre>
+ * final String url = NextUrlBuilder.use("https://api.example.com/")
+ *         .path("/v1/")
+ *         .path("users", "42")
+ *         .query("q", "中文 name")
+ *         .build();
+ * // https://api.example.com/v1/users/42?q=%E4%B8%AD%E6%96%87%20name
+ * </pre>
+ *
+ * @author YOOJIA.CHEN (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+public final class NextUrlBuilder {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final StringBuilder mBuffer;
+    private boolean mHasQuery = false;
+
+    public NextUrlBuilder() {
+        this(new StringBuilder(64));
+    }
+
+    /**
+     * @param buffer 写入的缓冲区，构建器会先清空其内容
+     */
+    public NextUrlBuilder(StringBuilder buffer) {
+        mBuffer = buffer;
+        mBuffer.setLength(0);
+    }
+
+    /**
+     * 清空已构建的内容，以新的根地址重新开始
+     * @param root 根地址
+     * @return NextUrlBuilder
+     */
+    public NextUrlBuilder reset(CharSequence root){
+        mBuffer.setLength(0);
+        mHasQuery = false;
+        if (root != null) {
+            mBuffer.append(root);
+        }
+        return this;
+    }
+
+    /**
+     * 添加一级路径，路径前后的 "/" 会被规范为一个。路径内容不做编码。
+     * @param segment 路径，为空时忽略
+     * @return NextUrlBuilder
+     */
+    public NextUrlBuilder path(CharSequence segment){
+        if (mHasQuery) {
+            throw new IllegalStateException("Cannot append path after query parameters !");
+        }
+        if (segment == null) {
+            return this;
+        }
+        int length = segment.length();
+        int start = 0;
+        while (start < length && segment.charAt(start) == '/') {
+            start++;
+        }
+        while (length > start && segment.charAt(length - 1) == '/') {
+            length--;
+        }
+        if (start == length) {
+            return this;
+        }
+        final int size = mBuffer.length();
+        if (size > 0 && mBuffer.charAt(size - 1) != '/') {
+            mBuffer.append('/');
+        }
+        mBuffer.append(segment, start, length);
+        return this;
+    }
+
+    public NextUrlBuilder path(CharSequence...segments){
+        for (CharSequence segment : segments) {
+            path(segment);
+        }
+        return this;
+    }
+
+    /**
+     * 添加查询参数，参数名和值按 UTF-8 进行百分号编码
+     * @param name 参数名
+     * @param value 参数值，为 null 时只添加参数名
+     * @return NextUrlBuilder
+     */
+    public NextUrlBuilder query(CharSequence name, CharSequence value){
+        appendQuerySeparator();
+        appendEncoded(mBuffer, name);
+        if (value != null) {
+            mBuffer.append('=');
+            appendEncoded(mBuffer, value);
+        }
+        return this;
+    }
+
+    public NextUrlBuilder query(CharSequence name, long value){
+        appendQuerySeparator();
+        appendEncoded(mBuffer, name);
+        mBuffer.append('=').append(value);
+        return this;
+    }
+
+    public NextUrlBuilder query(CharSequence name, boolean value){
+        appendQuerySeparator();
+        appendEncoded(mBuffer, name);
+        mBuffer.append('=').append(value);
+        return this;
+    }
+
+    private void appendQuerySeparator(){
+        if (mHasQuery) {
+            mBuffer.append('&');
+        }else{
+            mHasQuery = true;
+            // 根地址中可能已经包含查询参数
+            mBuffer.append(mBuffer.indexOf("?") >= 0 ? '&' : '?');
+        }
+    }
+
+    /**
+     * @return 构建结果
+     */
+    public String build(){
+        return mBuffer.toString();
+    }
+
+    /**
+     * 将构建结果写入指定的输出，不创建字符串
+     * @param out 输出
+     * @throws IOException 写入出错
+     */
+    public void appendTo(Appendable out) throws IOException {
+        out.append(mBuffer);
+    }
+
+    /**
+     * @return 构建结果的长度
+     */
+    public int length(){
+        return mBuffer.length();
+    }
+
+    @Override
+    public String toString() {
+        return build();
+    }
+
+    public static NextUrlBuilder use(CharSequence root){
+        return new NextUrlBuilder().reset(root);
+    }
+
+    /**
+     * 按 UTF-8 进行百分号编码并写入缓冲区，只有 RFC 3986 中的非保留字符不编码
+     * @param out 缓冲区
+     * @param input 输入
+     */
+    public static void appendEncoded(StringBuilder out, CharSequence input){
+        final int length = input.length();
+        for (int i = 0; i < length; i++) {
+            final char c = input.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~') {
+                out.append(c);
+            }else if (c < 0x80) {
+                appendByte(out, c);
+            }else if (c < 0x800) {
+                appendByte(out, 0xC0 | (c >> 6));
+                appendByte(out, 0x80 | (c & 0x3F));
+            }else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(input.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, input.charAt(++i));
+                appendByte(out, 0xF0 | (codePoint >> 18));
+                appendByte(out, 0x80 | ((codePoint >> 12) & 0x3F));
+                appendByte(out, 0x80 | ((codePoint >> 6) & 0x3F));
+                appendByte(out, 0x80 | (codePoint & 0x3F));
+            }else if (c >= 0xD800 && c <= 0xDFFF) {
+                // 不成对的代理字符按 UTF-8 编码器的做法替换为 '?'
+                appendByte(out, '?');
+            }else{
+                appendByte(out, 0xE0 | (c >> 12));
+                appendByte(out, 0x80 | ((c >> 6) & 0x3F));
+                appendByte(out, 0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private static void appendByte(StringBuilder out, int b){
+        out.append('%').append(HEX[(b >> 4) & 0x0F]).append(HEX[b & 0x0F]);
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.yoojia.next.lang;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * 按 KeyPath 深度优先遍历源数据的迭代器。每一级只保存当前节点和通配符对应的子节点迭代器，
+ * 不复制源数据，也不创建中间集合。
+ *
+ * @author YOOJIA.CHEN (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+final class PathIterator implements Iterator<Object> {
+
+    private static final Object END = new Object();
+
+    private final KeyPath mPath;
+    /**
+     * 各级的当前节点，nodes[0] 为源数据
+     */
+    private final Object[] mNodes;
+    /**
+     * 通配符各级的子节点迭代器
+     */
+    private final Iterator<?>[] mCursors;
+    /**
+     * 非通配符各级是否已访问过子节点
+     */
+    private final boolean[] mVisited;
+    private int mDepth;
+    private Object mNext;
+
+    PathIterator(Object source, KeyPath path) {
+        mPath = path;
+        final int size = path.size();
+        mNodes = new Object[size + 1];
+        mCursors = new Iterator<?>[size];
+        mVisited = new boolean[size];
+        mNodes[0] = source;
+        mDepth = source == null ? -1 : 0;
+        mNext = null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (mNext == null) {
+            mNext = findNext();
+        }
+        return mNext != END;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Object value = mNext;
+        mNext = null;
+        return value;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private Object findNext(){
+        final int size = mPath.size();
+        while (mDepth >= 0) {
+            if (mDepth == size) {
+                final Object value = mNodes[size];
+                mNodes[size] = null;
+                mDepth--;
+                if (value != null) {
+                    return value;
+                }
+                continue;
+            }
+            final Object node = mNodes[mDepth];
+            Object child = null;
+            if (mPath.wildcards[mDepth]) {
+                Iterator<?> cursor = mCursors[mDepth];
+                if (cursor == null) {
+                    cursor = children(node);
+                    mCursors[mDepth] = cursor;
+                }
+                if (cursor.hasNext()) {
+                    child = cursor.next();
+                }else{
+                    mCursors[mDepth] = null;
+                }
+                if (child == null && cursor.hasNext()) {
+                    // 值为 null 的子节点跳过，继续遍历同级节点
+                    continue;
+                }
+            }else if (!mVisited[mDepth]) {
+                mVisited[mDepth] = true;
+                child = NextMap.child(node, mPath.segments[mDepth], mPath.indexes[mDepth]);
+            }
+            if (child != null) {
+                mDepth++;
+                mNodes[mDepth] = child;
+            }else if (mCursors[mDepth] == null) {
+                // 当前级已遍历完，回到上一级
+                mVisited[mDepth] = false;
+                mNodes[mDepth] = null;
+                mDepth--;
+            }
+        }
+        return END;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Iterator<?> children(Object node){
+        if (node instanceof Map) {
+            return ((Map<String, Object>) node).values().iterator();
+        }else if (node instanceof List) {
+            return ((List<Object>) node).iterator();
+        }else{
+            return Collections.emptyList().iterator();
+        }
+    }
+}
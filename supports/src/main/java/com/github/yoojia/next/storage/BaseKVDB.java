@@ -1,45 +1,216 @@
 package com.github.yoojia.next.storage;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.util.Log;
+import android.util.LruCache;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 
 /**
+ * 读取只访问内存缓存，不加锁；写入在 mWriteLock 中串行执行，不会阻塞读取。
+ * reload() 构建新的缓存快照后整体替换，读取线程不会看到加载中途的缓存。
+ * 设置了内存预算时，缓存改为按字节计量的 LRU 缓存，未命中的KEY从存储引擎中读取。
+ * LRU 缓存的读取需要获取 LruCache 内部的锁。
+ *
  * @author 陈小锅 (yoojia.chen@gmail.com)
  * @since 1.0
  */
 class BaseKVDB {
 
-    private final SharedPreferences mPreferences;
-    private final Map<String, String> mMemCached = new HashMap<>();
-    private final ExecutorService mWriteThread;
+    static final String DB_NAME_PREFIX = "com_github_yoojia_next_kvdb_";
+
+    /**
+     * LRU 缓存中表示KEY不存在的值
+     */
+    private static final Value MISSING = Value.of(false);
+
+    /**
+     * 未关闭的 KVDB 实例，用于 flushAll()
+     */
+    private static final Set<BaseKVDB> INSTANCES = Collections.newSetFromMap(new WeakHashMap<BaseKVDB, Boolean>());
+
+    private final StorageEngine mEngine;
+    private volatile ConcurrentHashMap<String, Value> mMemCached = new ConcurrentHashMap<>();
+    /**
+     * 设置了内存预算时使用的 LRU 缓存，此时 mMemCached 不再使用
+     */
+    private final LruCache<String, Value> mLruCached;
+    private final int mMemoryBudget;
     private final boolean mWriteAsync;
+    private boolean mClosed = false;
+    /**
+     * 每次提交或重新加载时递增，用于判断锁外读取存储引擎期间是否有新的变更
+     */
+    private int mVersion = 0;
+
+    private final Object mWriteLock = new Object();
+    private Changes mPending = new Changes();
+    /**
+     * 正在写入存储引擎的变更
+     */
+    private Changes mFlushing = null;
+    private boolean mFlushScheduled = false;
+    /**
+     * 保证同一实例的变更按顺序写入存储引擎
+     */
+    private final Object mFlushLock = new Object();
+
+    private final Object mReadyLock = new Object();
+    private final CountDownLatch mReadyLatch = new CountDownLatch(1);
+    private volatile boolean mReady = false;
+    private OnReadyListener mOnReadyListener;
+
+    private final Runnable mLoadTask = new Runnable() {
+        @Override public void run() {
+            try {
+                reload();
+            } catch (RuntimeException e) {
+                Log.e("KVDB", "Load KVDB failed", e);
+            } finally {
+                markReady();
+            }
+        }
+    };
+
+    private final Runnable mFlushTask = new Runnable() {
+        @Override public void run() {
+            flushPending();
+        }
+    };
 
     public BaseKVDB(String dbName, Context context){
         this(dbName, context, false);
     }
 
     public BaseKVDB(String dbName, Context context, boolean writeAsync) {
-        final String finalDBName = "com_github_yoojia_next_kvdb_" + dbName;
-        mPreferences = context.getSharedPreferences(finalDBName, Context.MODE_PRIVATE);
+        this(new PreferencesEngine(dbName, context), writeAsync);
+    }
+
+    public BaseKVDB(StorageEngine engine){
+        this(engine, false);
+    }
+
+    public BaseKVDB(StorageEngine engine, boolean writeAsync) {
+        this(engine, writeAsync, false);
+    }
+
+    /**
+     * @param engine 存储引擎
+     * @param writeAsync 是否在后台线程写入
+     * @param loadAsync 是否在后台线程加载数据。异步加载时构造方法立即返回，读写操作在数据加载完成前会阻塞等待。
+     */
+    public BaseKVDB(StorageEngine engine, boolean writeAsync, boolean loadAsync) {
+        this(engine, writeAsync, loadAsync, 0);
+    }
+
+    /**
+     * @param engine 存储引擎
+     * @param writeAsync 是否在后台线程写入
+     * @param loadAsync 是否在后台线程加载数据
+     * @param memoryBudget 内存缓存预算字节数，小于等于 0 表示不限制，缓存全部数据
+     */
+    public BaseKVDB(StorageEngine engine, boolean writeAsync, boolean loadAsync, int memoryBudget) {
+        mEngine = engine;
+        mMemoryBudget = memoryBudget;
+        if (memoryBudget > 0) {
+            mLruCached = new LruCache<String, Value>(memoryBudget){
+                @Override protected int sizeOf(String key, Value value) {
+                    return entrySize(key, value);
+                }
+            };
+        }else{
+            mLruCached = null;
+        }
         mWriteAsync = writeAsync;
-        if (writeAsync){
-            mWriteThread = Executors.newSingleThreadExecutor();
+        synchronized (INSTANCES) {
+            INSTANCES.add(this);
+        }
+        if (loadAsync) {
+            KVScheduler.execute(mLoadTask);
         }else{
-            mWriteThread = null;
+            reload();
+            markReady();
+        }
+    }
+
+    /**
+     * @return 数据是否已加载完成
+     */
+    public boolean isReady(){
+        return mReady;
+    }
+
+    /**
+     * 设置数据加载完成的回调。如果数据已加载完成，立即在当前线程中回调。
+     * @param listener 回调
+     */
+    public void setOnReadyListener(OnReadyListener listener){
+        synchronized (mReadyLock) {
+            if (!mReady) {
+                mOnReadyListener = listener;
+                return;
+            }
+        }
+        listener.onReady();
+    }
+
+    /**
+     * 阻塞等待数据加载完成
+     */
+    public void awaitReady(){
+        if (mReady) {
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                mReadyLatch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void markReady(){
+        final OnReadyListener listener;
+        synchronized (mReadyLock) {
+            mReady = true;
+            listener = mOnReadyListener;
+            mOnReadyListener = null;
+        }
+        mReadyLatch.countDown();
+        if (listener != null) {
+            listener.onReady();
         }
-        reload();
     }
 
-    @SuppressWarnings("unchecked")
     public void reload(){
-        mMemCached.clear();
-        mMemCached.putAll((Map<? extends String, ? extends String>) mPreferences.getAll());
+        synchronized (mWriteLock) {
+            mVersion++;
+            if (mLruCached != null) {
+                // 有内存预算时不预加载全部数据，未命中的KEY按需从存储引擎读取
+                mLruCached.evictAll();
+                return;
+            }
+            final ConcurrentHashMap<String, Value> snapshot = new ConcurrentHashMap<>(mEngine.load());
+            // 尚未落地的变更需要保留在新快照中
+            if (mFlushing != null) {
+                mFlushing.applyTo(snapshot);
+            }
+            mPending.applyTo(snapshot);
+            mMemCached = snapshot;
+        }
     }
 
     public String get(String key){
@@ -47,56 +218,232 @@ class BaseKVDB {
     }
 
     public String get(String key, String defValue){
-        if (mMemCached.containsKey(key)){
-            return mMemCached.get(key);
-        }else{
-            return defValue;
-        }
+        final Value value = getValue(key);
+        return value == null ? defValue : value.asString();
     }
 
-    public void set(final String key, final String value){
+    public void set(String key, String value){
         if (value == null || value.isEmpty()) {
             Log.e("KVDB", "Ignore set empty value for KEY[" + key + "]. You can try remove(key).");
             return;
         }
-        mMemCached.put(key, value);
-        final Runnable task = new Runnable() {
-            @Override public void run() {
-                mPreferences.edit().putString(key, value).apply();
+        put(key, Value.of(value));
+    }
+
+    /**
+     * 获取KEY对应的值对象
+     * @param key KEY
+     * @return 值对象，不存在时返回 null
+     */
+    Value getValue(String key){
+        awaitReady();
+        if (mLruCached == null) {
+            return mMemCached.get(key);
+        }
+        final Value cached = mLruCached.get(key);
+        if (cached != null) {
+            return cached == MISSING ? null : cached;
+        }
+        final int version;
+        synchronized (mWriteLock) {
+            // 关闭后存储引擎不可读取，未缓存的KEY视为不存在
+            if (mClosed) {
+                return null;
+            }
+            // 尚未落地的变更优先于存储引擎中的数据
+            if (mPending.covers(key)) {
+                return mPending.valueOf(key);
+            }
+            if (mFlushing != null && mFlushing.covers(key)) {
+                return mFlushing.valueOf(key);
+            }
+            version = mVersion;
+        }
+        // 在锁外读取存储引擎，不阻塞写入
+        final Value value;
+        try {
+            value = mEngine.read(key);
+        } catch (IllegalStateException e) {
+            // 读取期间 KVDB 被关闭
+            synchronized (mWriteLock) {
+                if (mClosed) {
+                    return null;
+                }
+            }
+            throw e;
+        }
+        synchronized (mWriteLock) {
+            // 读取期间没有新的变更时才写入缓存，避免旧值覆盖新值；不存在的KEY也缓存，下次不再读取存储引擎
+            if (version == mVersion) {
+                mLruCached.put(key, value == null ? MISSING : value);
             }
-        };
-        if (mWriteAsync) {
-            mWriteThread.submit(task);
-        }else{
-            task.run();
         }
+        return value;
     }
 
-    public void remove(final String key){
-        mMemCached.remove(key);
-        final Runnable task = new Runnable() {
-            @Override public void run() {
-                mPreferences.edit().remove(key).apply();
+    /**
+     * @return 内存缓存的统计数据
+     */
+    public CacheStats getCacheStats(){
+        if (mLruCached == null) {
+            long size = 0;
+            for (Map.Entry<String, Value> entry : mMemCached.entrySet()) {
+                size += entrySize(entry.getKey(), entry.getValue());
             }
-        };
-        if (mWriteAsync) {
-            mWriteThread.submit(task);
-        }else{
-            task.run();
+            return new CacheStats(0, 0, 0, size, -1);
         }
+        return new CacheStats(mLruCached.hitCount(), mLruCached.missCount(), mLruCached.evictionCount(),
+                mLruCached.size(), mMemoryBudget);
+    }
+
+    void put(String key, Value value){
+        final Changes changes = new Changes();
+        changes.put(key, value);
+        commit(changes);
+    }
+
+    public void remove(String key){
+        final Changes changes = new Changes();
+        changes.remove(key);
+        commit(changes);
     }
 
     public void clear(){
-        mMemCached.clear();
-        final Runnable task = new Runnable() {
-            @Override public void run() {
-                mPreferences.edit().clear().apply();
-            }
-        };
-        if (mWriteAsync) {
-            mWriteThread.submit(task);
-        }else{
-            task.run();
+        final Changes changes = new Changes();
+        changes.clear();
+        commit(changes);
+    }
+
+    /**
+     * 开始一个批量写入事务
+     * @return Transaction
+     */
+    public Transaction begin(){
+        return new Transaction(this);
+    }
+
+    void commit(Changes changes){
+        if (changes.isEmpty()) {
+            return;
+        }
+        awaitReady();
+        synchronized (mWriteLock) {
+            if (mClosed) {
+                throw new IllegalStateException("KVDB already closed !");
+            }
+            mVersion++;
+            if (mLruCached != null) {
+                updateLruCache(changes);
+            }else if (changes.isCleared()) {
+                // 清空时整体替换缓存，读取线程不会看到清空后尚未写入新值的中间状态
+                final ConcurrentHashMap<String, Value> snapshot = new ConcurrentHashMap<>();
+                changes.applyTo(snapshot);
+                mMemCached = snapshot;
+            }else if (changes.updates().size() > 1) {
+                // 多个KEY的变更写入缓存副本后整体替换，读取线程不会看到只写入了一部分的事务
+                final ConcurrentHashMap<String, Value> snapshot = new ConcurrentHashMap<>(mMemCached);
+                changes.applyTo(snapshot);
+                mMemCached = snapshot;
+            }else{
+                changes.applyTo(mMemCached);
+            }
+            if (mWriteAsync) {
+                // 合并到待写入队列，同一KEY的多次变更只写入最后一次
+                mPending.merge(changes);
+                if (!mFlushScheduled) {
+                    mFlushScheduled = true;
+                    KVScheduler.execute(mFlushTask);
+                }
+            }else{
+                mEngine.apply(changes);
+            }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 将待写入的变更写入存储引擎，并等待存储引擎将数据落地到磁盘。可以在任意线程中调用，不依赖后台线程。
+     */
+    public void flush(){
+        awaitReady();
+        flushPending();
+        mEngine.flush();
+    }
+
+    /**
+     * 写入全部待写入的变更并关闭存储引擎。关闭后仍可读取内存缓存中的数据，写入将抛出 IllegalStateException。
+     * 设置了内存预算时，关闭后读取未缓存的KEY返回 null 或默认值。
+     */
+    public void close(){
+        synchronized (mWriteLock) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+        }
+        synchronized (INSTANCES) {
+            INSTANCES.remove(this);
+        }
+        awaitReady();
+        flushPending();
+        mEngine.close();
+    }
+
+    /**
+     * 将全部未关闭的 KVDB 实例的待写入变更落地到磁盘，用于进程退出前保证数据完整。
+     */
+    public static void flushAll(){
+        final List<BaseKVDB> instances;
+        synchronized (INSTANCES) {
+            instances = new ArrayList<>(INSTANCES);
+        }
+        for (BaseKVDB db : instances) {
+            db.flush();
+        }
+    }
+
+    private void flushPending(){
+        synchronized (mFlushLock) {
+            final Changes changes;
+            synchronized (mWriteLock) {
+                changes = mPending;
+                mPending = new Changes();
+                mFlushing = changes;
+                mFlushScheduled = false;
+            }
+            try {
+                if (!changes.isEmpty()) {
+                    mEngine.apply(changes);
+                }
+            } finally {
+                synchronized (mWriteLock) {
+                    if (mFlushing == changes) {
+                        mFlushing = null;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 更新 LRU 缓存。调用时必须持有 mWriteLock。
+     * 先移除全部变更的KEY，读取这些KEY的线程会在 mWriteLock 上等待本次提交完成，不会看到只写入了一部分的事务。
+     */
+    private void updateLruCache(Changes changes){
+        if (changes.isCleared()) {
+            mLruCached.evictAll();
+        }
+        final Map<String, Value> updates = changes.updates();
+        for (String key : updates.keySet()) {
+            mLruCached.remove(key);
+        }
+        for (Map.Entry<String, Value> entry : updates.entrySet()) {
+            final Value value = entry.getValue();
+            mLruCached.put(entry.getKey(), value == null ? MISSING : value);
+        }
+    }
+
+    private static int entrySize(String key, Value value){
+        // 约 32 字节的哈希表节点，加上KEY字符串和值对象
+        return 32 + 40 + 2 * key.length() + value.estimateSize();
+    }
+}
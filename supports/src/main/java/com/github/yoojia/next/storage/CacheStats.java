@@ -0,0 +1,45 @@
+package com.github.yoojia.next.storage;
+
+/**
+ * KVDB 内存缓存的统计数据。只有设置了内存预算的 KVDB 才会统计命中、未命中和淘汰次数。
+ *
+ * @author 陈小锅 (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+public final class CacheStats {
+
+    /**
+     * 缓存命中次数
+     */
+    public final long hitCount;
+    /**
+     * 缓存未命中，需要从存储引擎读取的次数
+     */
+    public final long missCount;
+    /**
+     * 超出内存预算被淘汰的条目数
+     */
+    public final long evictionCount;
+    /**
+     * 当前缓存占用的估算字节数
+     */
+    public final long sizeBytes;
+    /**
+     * 内存预算字节数，没有设置预算时为 -1
+     */
+    public final long budgetBytes;
+
+    CacheStats(long hitCount, long missCount, long evictionCount, long sizeBytes, long budgetBytes) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.sizeBytes = sizeBytes;
+        this.budgetBytes = budgetBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hit=" + hitCount + ", miss=" + missCount + ", eviction=" + evictionCount +
+                ", size=" + sizeBytes + ", budget=" + budgetBytes + "}";
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.yoojia.next.storage;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一组待写入的变更。同一个KEY的多次变更只保留最后一次，清空操作会丢弃在它之前的全部变更。
+ *
+ * @author 陈小锅 (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+public final class Changes {
+
+    private final Map<String, Value> mUpdates = new LinkedHashMap<>();
+    private boolean mCleared = false;
+
+    Changes() {
+    }
+
+    void put(String key, Value value){
+        mUpdates.put(key, value);
+    }
+
+    void remove(String key){
+        mUpdates.put(key, null);
+    }
+
+    void clear(){
+        mUpdates.clear();
+        mCleared = true;
+    }
+
+    /**
+     * 将另一组变更合并到当前变更之后
+     * @param changes 后发生的变更
+     */
+    void merge(Changes changes){
+        if (changes.mCleared) {
+            clear();
+        }
+        mUpdates.putAll(changes.mUpdates);
+    }
+
+    /**
+     * 将变更应用到内存缓存
+     * @param target 内存缓存
+     */
+    void applyTo(Map<String, Value> target){
+        if (mCleared) {
+            target.clear();
+        }
+        for (Map.Entry<String, Value> entry : mUpdates.entrySet()) {
+            final Value value = entry.getValue();
+            if (value == null) {
+                target.remove(entry.getKey());
+            }else{
+                target.put(entry.getKey(), value);
+            }
+        }
+    }
+
+    /**
+     * @param key KEY
+     * @return 这组变更是否决定了KEY的值
+     */
+    boolean covers(String key){
+        return mCleared || mUpdates.containsKey(key);
+    }
+
+    /**
+     * @param key KEY
+     * @return 变更后KEY的值，被删除或清空时返回 null
+     */
+    Value valueOf(String key){
+        return mUpdates.get(key);
+    }
+
+    /**
+     * @return 是否在写入变更前先清空全部数据
+     */
+    public boolean isCleared() {
+        return mCleared;
+    }
+
+    /**
+     * @return 按发生顺序排列的变更，值为 null 表示删除该KEY
+     */
+    public Map<String, Value> updates() {
+        return Collections.unmodifiableMap(mUpdates);
+    }
+
+    public boolean isEmpty(){
+        return !mCleared && mUpdates.isEmpty();
+    }
+}
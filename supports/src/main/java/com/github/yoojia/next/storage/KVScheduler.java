@@ -0,0 +1,44 @@
+package com.github.yoojia.next.storage;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 全部 KVDB 实例共享的后台IO线程池，用于异步写入、异步加载和日志压缩。
+ * 线程数有上限，空闲超时后线程会退出，没有IO任务时不占用线程。
+ *
+ * @author 陈小锅 (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+final class KVScheduler {
+
+    private static final int MAX_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final ThreadPoolExecutor EXECUTOR;
+
+    static {
+        EXECUTOR = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger(0);
+                    @Override public Thread newThread(Runnable r) {
+                        final Thread thread = new Thread(r, "KVDB-IO-" + mCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private KVScheduler() {
+    }
+
+    static void execute(Runnable task){
+        EXECUTOR.execute(task);
+    }
+}
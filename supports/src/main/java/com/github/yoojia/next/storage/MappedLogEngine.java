@@ -0,0 +1,523 @@
+package com.github.yoojia.next.storage;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基于内存映射文件的追加日志存储引擎。
+ * 每次写入只在日志尾部追加一条记录，写入开销与变更大小相关，与数据库总大小无关。
+ * 当日志中的无效记录超过一半时，在后台线程中压缩日志。
+ *
+ * 日志格式：[MAGIC:4][VERSION:4] 之后为连续的记录：
+ * [LENGTH:4][OP:1][KEY_LENGTH:2][KEY][VALUE]，其中 LENGTH 为 OP 起始的记录体长度。
+ * 字符串值以 UTF-8 保存；数值和布尔值以 [TYPE:1][原始位] 的二进制形式保存。
+ * 记录体先于 LENGTH 写入，LENGTH 为 0 时表示日志结束，写入中途崩溃的记录在重放时会被忽略。
+ *
+ * @author 陈小锅 (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+public class MappedLogEngine implements StorageEngine {
+
+    private static final String TAG = "KVDB";
+
+    private static final int MAGIC = 0x4E4B5644;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEAD_SIZE = 4 + 1 + 2;
+
+    private static final int MIN_CAPACITY = 16 * 1024;
+    /**
+     * 日志超过此大小，并且无效记录过半时才触发压缩
+     */
+    private static final int COMPACT_MIN_SIZE = 64 * 1024;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_CLEAR = 3;
+    private static final byte OP_PUT_TYPED = 4;
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Object mLock = new Object();
+    private final File mFile;
+
+    private final Runnable mCompactTask = new Runnable() {
+        @Override public void run() {
+            try {
+                compact();
+            } catch (IOException e) {
+                Log.e(TAG, "Compact log failed: " + mFile, e);
+            } finally {
+                synchronized (mLock) {
+                    mCompacting = false;
+                }
+            }
+        }
+    };
+
+    /**
+     * KEY -> 最新记录在日志中的偏移
+     */
+    private Map<String, Integer> mIndex = new HashMap<>();
+    private FileChannel mChannel;
+    private MappedByteBuffer mBuffer;
+    private int mPosition;
+    private int mLiveBytes;
+    private boolean mCompacting;
+    private boolean mClosed;
+
+    public MappedLogEngine(String dbName, Context context) {
+        this(new File(context.getFilesDir(), BaseKVDB.DB_NAME_PREFIX + dbName + ".kvlog"));
+    }
+
+    /**
+     * 日志文件在第一次读写时才打开并重放，创建引擎对象本身没有IO开销
+     * @param file 日志文件
+     */
+    public MappedLogEngine(File file) {
+        mFile = file;
+    }
+
+    @Override
+    public Map<String, Value> load() {
+        synchronized (mLock) {
+            ensureOpen();
+            final Map<String, Value> output = new HashMap<>(mIndex.size());
+            for (Map.Entry<String, Integer> entry : mIndex.entrySet()) {
+                output.put(entry.getKey(), readValue(entry.getValue()));
+            }
+            return output;
+        }
+    }
+
+    @Override
+    public Value read(String key) {
+        synchronized (mLock) {
+            ensureOpen();
+            final Integer offset = mIndex.get(key);
+            return offset == null ? null : readValue(offset);
+        }
+    }
+
+    /**
+     * 将映射内存中的修改强制写入磁盘。进程被杀时映射内存中的数据由系统写回，只有系统崩溃或断电才需要此操作。
+     */
+    @Override
+    public void flush() {
+        synchronized (mLock) {
+            if (mBuffer != null && !mClosed) {
+                mBuffer.force();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (mLock) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            if (mChannel != null) {
+                mBuffer.force();
+                try {
+                    mChannel.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "Close KVDB log failed: " + mFile, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void apply(Changes changes) {
+        synchronized (mLock) {
+            ensureOpen();
+            if (changes.isCleared()) {
+                append(OP_CLEAR, EMPTY, EMPTY);
+                mIndex.clear();
+                mLiveBytes = 0;
+            }
+            for (Map.Entry<String, Value> entry : changes.updates().entrySet()) {
+                final Value value = entry.getValue();
+                if (value == null) {
+                    remove(entry.getKey());
+                }else{
+                    put(entry.getKey(), value);
+                }
+            }
+            compactIfNeeded();
+        }
+    }
+
+    private void put(String key, Value value) {
+        final byte op = value.type() == Value.TYPE_STRING ? OP_PUT : OP_PUT_TYPED;
+        final int offset = append(op, encodeKey(key), encodeValue(value));
+        final Integer old = mIndex.put(key, offset);
+        if (old != null) {
+            mLiveBytes -= recordSize(old);
+        }
+        mLiveBytes += recordSize(offset);
+    }
+
+    private void remove(String key) {
+        final Integer old = mIndex.remove(key);
+        if (old != null) {
+            mLiveBytes -= recordSize(old);
+            append(OP_REMOVE, encodeKey(key), EMPTY);
+        }
+    }
+
+    private void ensureOpen() {
+        if (mClosed) {
+            throw new IllegalStateException("KVDB log already closed: " + mFile);
+        }
+        if (mChannel != null) {
+            return;
+        }
+        try {
+            open();
+        } catch (IOException e) {
+            if (mChannel != null) {
+                try {
+                    mChannel.close();
+                } catch (IOException ignored) {
+                    // ignore
+                }
+                mChannel = null;
+            }
+            throw new IllegalStateException("Cannot open KVDB log: " + mFile, e);
+        }
+    }
+
+    private void open() throws IOException {
+        final File parent = mFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create dir: " + parent);
+        }
+        mChannel = new RandomAccessFile(mFile, "rw").getChannel();
+        final long size = mChannel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("KVDB log too large: " + size);
+        }
+        mBuffer = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max((int) size, MIN_CAPACITY));
+        if (mBuffer.getInt(0) != MAGIC || mBuffer.getInt(4) != VERSION) {
+            if (size > 0) {
+                Log.w(TAG, "Unrecognized KVDB log, reset: " + mFile);
+                mChannel.truncate(0);
+                mBuffer = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, MIN_CAPACITY);
+            }
+            mBuffer.putInt(0, MAGIC);
+            mBuffer.putInt(4, VERSION);
+        }
+        replay();
+    }
+
+    private void replay() {
+        mIndex.clear();
+        mLiveBytes = 0;
+        final int limit = mBuffer.capacity();
+        int pos = HEADER_SIZE;
+        scan:
+        while (pos + RECORD_HEAD_SIZE <= limit) {
+            final int length = mBuffer.getInt(pos);
+            if (length <= 0 || pos + 4 + length > limit) {
+                break;
+            }
+            final byte op = mBuffer.get(pos + 4);
+            switch (op) {
+                case OP_PUT:
+                case OP_PUT_TYPED:
+                    final Integer replaced = mIndex.put(readKey(pos), pos);
+                    if (replaced != null) {
+                        mLiveBytes -= recordSize(replaced);
+                    }
+                    mLiveBytes += 4 + length;
+                    break;
+                case OP_REMOVE:
+                    final Integer removed = mIndex.remove(readKey(pos));
+                    if (removed != null) {
+                        mLiveBytes -= recordSize(removed);
+                    }
+                    break;
+                case OP_CLEAR:
+                    mIndex.clear();
+                    mLiveBytes = 0;
+                    break;
+                default:
+                    Log.w(TAG, "Broken KVDB log record at " + pos + ", ignore the tail: " + mFile);
+                    break scan;
+            }
+            pos += 4 + length;
+        }
+        mPosition = pos;
+    }
+
+    private int append(byte op, byte[] key, byte[] value) {
+        final int length = 1 + 2 + key.length + value.length;
+        final int start = mPosition;
+        // 预留下一条记录的 LENGTH 位置，写入 0 作为日志结束标记
+        ensureCapacity((long) start + 4 + length + 4);
+        mBuffer.put(start + 4, op);
+        mBuffer.putShort(start + 5, (short) key.length);
+        mBuffer.position(start + RECORD_HEAD_SIZE);
+        mBuffer.put(key);
+        mBuffer.put(value);
+        mBuffer.putInt(start + 4 + length, 0);
+        mBuffer.putInt(start, length);
+        mPosition = start + 4 + length;
+        return start;
+    }
+
+    private void ensureCapacity(long required) {
+        final int capacity = mBuffer.capacity();
+        if (required <= capacity) {
+            return;
+        }
+        if (required > Integer.MAX_VALUE) {
+            throw new IllegalStateException("KVDB log too large: " + mFile);
+        }
+        try {
+            mBuffer = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacityFor(required));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot grow KVDB log: " + mFile, e);
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (!mCompacting && mPosition > COMPACT_MIN_SIZE && mLiveBytes < (mPosition - HEADER_SIZE) / 2) {
+            mCompacting = true;
+            KVScheduler.execute(mCompactTask);
+        }
+    }
+
+    /**
+     * 将有效记录复制到新的日志文件，然后替换当前日志。
+     * 只在获取快照和替换文件时持有 mLock，复制有效记录期间不阻塞读写；
+     * 复制期间追加的记录在替换前补充到新日志中。
+     */
+    private void compact() throws IOException {
+        final Map<String, Integer> snapshot;
+        final ByteBuffer source;
+        final int snapshotPosition;
+        final int liveBytes;
+        synchronized (mLock) {
+            if (mClosed) {
+                return;
+            }
+            snapshot = new HashMap<>(mIndex);
+            // 日志只追加，快照位置之前的记录不会再被修改
+            source = mBuffer.duplicate();
+            snapshotPosition = mPosition;
+            liveBytes = mLiveBytes;
+        }
+        final File temp = new File(mFile.getPath() + ".tmp");
+        final Map<String, Integer> index = new HashMap<>(snapshot.size());
+        final int position = writeRecords(temp, source, snapshot, index,
+                capacityFor((long) HEADER_SIZE + liveBytes + 4));
+        synchronized (mLock) {
+            if (mClosed) {
+                if (!temp.delete()) {
+                    Log.w(TAG, "Cannot delete temp log: " + temp);
+                }
+                return;
+            }
+            replace(temp, index, position, snapshotPosition);
+        }
+    }
+
+    /**
+     * 将快照中的有效记录写入新的日志文件，不需要持有 mLock
+     * @return 新日志的写入位置
+     */
+    private static int writeRecords(File temp, ByteBuffer source, Map<String, Integer> snapshot,
+                                    Map<String, Integer> index, int capacity) throws IOException {
+        final RandomAccessFile output = new RandomAccessFile(temp, "rw");
+        try {
+            output.setLength(0);
+            final MappedByteBuffer buffer = output.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.position(HEADER_SIZE);
+            for (Map.Entry<String, Integer> entry : snapshot.entrySet()) {
+                final int offset = entry.getValue();
+                source.clear();
+                source.position(offset);
+                source.limit(offset + 4 + source.getInt(offset));
+                index.put(entry.getKey(), buffer.position());
+                buffer.put(source);
+            }
+            final int position = buffer.position();
+            buffer.putInt(position, 0);
+            buffer.force();
+            return position;
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * 补充快照之后追加的记录，然后用新日志替换当前日志。调用时必须持有 mLock。
+     * 新日志在替换前已经打开并映射，替换失败时继续使用原日志，原日志的通道和映射始终有效。
+     */
+    private void replace(File temp, Map<String, Integer> index, int position, int snapshotPosition) throws IOException {
+        final int tailLength = mPosition - snapshotPosition;
+        final int capacity = capacityFor((long) position + tailLength + 4);
+        final RandomAccessFile output = new RandomAccessFile(temp, "rw");
+        boolean replaced = false;
+        try {
+            final FileChannel channel = output.getChannel();
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            if (tailLength > 0) {
+                final ByteBuffer tail = mBuffer.duplicate();
+                tail.clear();
+                tail.position(snapshotPosition);
+                tail.limit(mPosition);
+                buffer.position(position);
+                buffer.put(tail);
+                // 在新日志中重放追加的记录，更新索引
+                int pos = position;
+                final int end = position + tailLength;
+                while (pos < end) {
+                    final int length = buffer.getInt(pos);
+                    switch (buffer.get(pos + 4)) {
+                        case OP_PUT:
+                        case OP_PUT_TYPED:
+                            index.put(readKey(buffer, pos), pos);
+                            break;
+                        case OP_REMOVE:
+                            index.remove(readKey(buffer, pos));
+                            break;
+                        case OP_CLEAR:
+                            index.clear();
+                            break;
+                        default:
+                            break;
+                    }
+                    pos += 4 + length;
+                }
+                position = end;
+            }
+            buffer.putInt(position, 0);
+            buffer.force();
+            // 重命名后已打开的通道和映射指向替换后的日志文件
+            if (!temp.renameTo(mFile)) {
+                throw new IOException("Cannot replace KVDB log: " + mFile);
+            }
+            replaced = true;
+            final FileChannel old = mChannel;
+            mChannel = channel;
+            mBuffer = buffer;
+            mIndex = index;
+            mPosition = position;
+            try {
+                old.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Close replaced KVDB log failed: " + mFile, e);
+            }
+        } finally {
+            if (!replaced) {
+                output.close();
+                if (!temp.delete()) {
+                    Log.w(TAG, "Cannot delete temp log: " + temp);
+                }
+            }
+        }
+    }
+
+    private int recordSize(int offset) {
+        return 4 + mBuffer.getInt(offset);
+    }
+
+    private String readKey(int offset) {
+        return readKey(mBuffer, offset);
+    }
+
+    private static String readKey(ByteBuffer buffer, int offset) {
+        final int keyLength = buffer.getShort(offset + 5);
+        final byte[] bytes = new byte[keyLength];
+        final ByteBuffer source = buffer.duplicate();
+        source.clear();
+        source.position(offset + RECORD_HEAD_SIZE);
+        source.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private Value readValue(int offset) {
+        final int keyLength = mBuffer.getShort(offset + 5);
+        final int valueOffset = offset + RECORD_HEAD_SIZE + keyLength;
+        if (mBuffer.get(offset + 4) == OP_PUT) {
+            return Value.of(readString(valueOffset, offset + recordSize(offset) - valueOffset));
+        }
+        final byte type = mBuffer.get(valueOffset);
+        final long bits;
+        switch (type) {
+            case Value.TYPE_LONG:
+            case Value.TYPE_DOUBLE:
+                bits = mBuffer.getLong(valueOffset + 1);
+                break;
+            case Value.TYPE_BOOLEAN:
+                bits = mBuffer.get(valueOffset + 1);
+                break;
+            default:
+                bits = mBuffer.getInt(valueOffset + 1);
+                break;
+        }
+        return Value.fromBits(type, bits);
+    }
+
+    private String readString(int offset, int length) {
+        final byte[] bytes = new byte[length];
+        final ByteBuffer source = mBuffer.duplicate();
+        source.position(offset);
+        source.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static byte[] encodeKey(String key) {
+        final byte[] bytes = key.getBytes(UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("KEY is too long: " + key.length());
+        }
+        return bytes;
+    }
+
+    private static byte[] encodeValue(Value value) {
+        final byte type = value.type();
+        final ByteBuffer buffer;
+        switch (type) {
+            case Value.TYPE_STRING:
+                return value.asString().getBytes(UTF_8);
+            case Value.TYPE_LONG:
+            case Value.TYPE_DOUBLE:
+                buffer = ByteBuffer.allocate(1 + 8).put(type).putLong(value.bits());
+                break;
+            case Value.TYPE_BOOLEAN:
+                buffer = ByteBuffer.allocate(1 + 1).put(type).put((byte) value.bits());
+                break;
+            default:
+                buffer = ByteBuffer.allocate(1 + 4).put(type).putInt((int) value.bits());
+                break;
+        }
+        return buffer.array();
+    }
+
+    private static int capacityFor(long required) {
+        long capacity = MIN_CAPACITY;
+        while (capacity < required) {
+            capacity <<= 1;
+        }
+        return (int) Math.min(capacity, Integer.MAX_VALUE);
+    }
+}
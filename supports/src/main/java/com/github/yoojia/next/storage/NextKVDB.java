@@ -16,43 +16,90 @@ public class NextKVDB extends BaseKVDB {
         super(dbName, context, writeAsync);
     }
 
+    public NextKVDB(StorageEngine engine) {
+        super(engine);
+    }
+
+    public NextKVDB(StorageEngine engine, boolean writeAsync) {
+        super(engine, writeAsync);
+    }
+
+    public NextKVDB(StorageEngine engine, boolean writeAsync, boolean loadAsync) {
+        super(engine, writeAsync, loadAsync);
+    }
+
+    public NextKVDB(StorageEngine engine, boolean writeAsync, boolean loadAsync, int memoryBudget) {
+        super(engine, writeAsync, loadAsync, memoryBudget);
+    }
+
+    /**
+     * 在后台线程中加载数据，立即返回 NextKVDB 对象
+     * @param engine 存储引擎
+     * @param writeAsync 是否在后台线程写入
+     * @param listener 数据加载完成的回调，可以为 null
+     * @return NextKVDB
+     */
+    public static NextKVDB openAsync(StorageEngine engine, boolean writeAsync, OnReadyListener listener){
+        final NextKVDB db = new NextKVDB(engine, writeAsync, true);
+        if (listener != null) {
+            db.setOnReadyListener(listener);
+        }
+        return db;
+    }
+
+    /**
+     * 在后台线程中加载 SharedPreferences 数据，立即返回 NextKVDB 对象
+     * @param dbName 数据库名
+     * @param context Context
+     * @param listener 数据加载完成的回调，可以为 null
+     * @return NextKVDB
+     */
+    public static NextKVDB openAsync(String dbName, Context context, OnReadyListener listener){
+        return openAsync(new PreferencesEngine(dbName, context), false, listener);
+    }
+
     public int get(String key, int defValue){
-        return Integer.valueOf(get(key, String.valueOf(defValue)));
+        final Value value = getValue(key);
+        return value == null ? defValue : value.asInt(defValue);
     }
 
     public long get(String key, long defValue){
-        return Long.valueOf(get(key, String.valueOf(defValue)));
+        final Value value = getValue(key);
+        return value == null ? defValue : value.asLong(defValue);
     }
 
     public float get(String key, float defValue){
-        return Float.valueOf(get(key, String.valueOf(defValue)));
+        final Value value = getValue(key);
+        return value == null ? defValue : value.asFloat(defValue);
     }
 
     public double get(String key, double defValue){
-        return Double.valueOf(get(key, String.valueOf(defValue)));
+        final Value value = getValue(key);
+        return value == null ? defValue : value.asDouble(defValue);
     }
 
     public boolean get(String key, boolean defValue){
-        return Boolean.valueOf(get(key, String.valueOf(defValue)));
+        final Value value = getValue(key);
+        return value == null ? defValue : value.asBoolean(defValue);
     }
 
     public void set(String key, int value){
-        set(key, String.valueOf(value));
+        put(key, Value.of(value));
     }
 
     public void set(String key, long value){
-        set(key, String.valueOf(value));
+        put(key, Value.of(value));
     }
 
     public void set(String key, float value){
-        set(key, String.valueOf(value));
+        put(key, Value.of(value));
     }
 
     public void set(String key, double value){
-        set(key, String.valueOf(value));
+        put(key, Value.of(value));
     }
 
     public void set(String key, boolean value){
-        set(key, String.valueOf(value));
+        put(key, Value.of(value));
     }
 }
\ No newline at end of file
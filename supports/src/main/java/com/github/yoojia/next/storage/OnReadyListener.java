@@ -0,0 +1,15 @@
+package com.github.yoojia.next.storage;
+
+/**
+ * KVDB 数据加载完成的回调
+ *
+ * @author 陈小锅 (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+public interface OnReadyListener {
+
+    /**
+     * 数据加载完成。异步加载时在加载线程中回调；注册时已加载完成则在注册线程中立即回调。
+     */
+    void onReady();
+}
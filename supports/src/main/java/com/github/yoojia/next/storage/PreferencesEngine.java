@@ -0,0 +1,134 @@
+package com.github.yoojia.next.storage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基于 SharedPreferences 的存储引擎。每次写入时 SharedPreferences 会重写整个 XML 文件。
+ * SharedPreferences 不支持 double 类型，double 值以字符串形式保存。
+ *
+ * @author 陈小锅 (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+public class PreferencesEngine implements StorageEngine {
+
+    private final SharedPreferences mPreferences;
+
+    public PreferencesEngine(String dbName, Context context) {
+        mPreferences = context.getSharedPreferences(BaseKVDB.DB_NAME_PREFIX + dbName, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public Map<String, Value> load() {
+        final Map<String, ?> all = mPreferences.getAll();
+        final Map<String, Value> output = new HashMap<>(all.size());
+        for (Map.Entry<String, ?> entry : all.entrySet()) {
+            final Value value = toValue(entry.getValue());
+            if (value != null) {
+                output.put(entry.getKey(), value);
+            }
+        }
+        return output;
+    }
+
+    @Override
+    public Value read(String key) {
+        if (!mPreferences.contains(key)) {
+            return null;
+        }
+        // getAll() 会复制全部数据，这里按类型依次尝试读取单个KEY，类型不匹配时 SharedPreferences 抛出 ClassCastException
+        try {
+            return Value.of(mPreferences.getString(key, ""));
+        } catch (ClassCastException notString) {
+            // 继续尝试其它类型
+        }
+        try {
+            return Value.of(mPreferences.getInt(key, 0));
+        } catch (ClassCastException notInt) {
+            // 继续尝试其它类型
+        }
+        try {
+            return Value.of(mPreferences.getLong(key, 0));
+        } catch (ClassCastException notLong) {
+            // 继续尝试其它类型
+        }
+        try {
+            return Value.of(mPreferences.getFloat(key, 0));
+        } catch (ClassCastException notFloat) {
+            // 继续尝试其它类型
+        }
+        try {
+            return Value.of(mPreferences.getBoolean(key, false));
+        } catch (ClassCastException notBoolean) {
+            // StringSet 等类型不属于 KVDB 管理的数据
+            return null;
+        }
+    }
+
+    @Override
+    public void apply(Changes changes) {
+        final SharedPreferences.Editor editor = mPreferences.edit();
+        if (changes.isCleared()) {
+            editor.clear();
+        }
+        for (Map.Entry<String, Value> entry : changes.updates().entrySet()) {
+            final String key = entry.getKey();
+            final Value value = entry.getValue();
+            if (value == null) {
+                editor.remove(key);
+                continue;
+            }
+            switch (value.type()) {
+                case Value.TYPE_INT:
+                    editor.putInt(key, value.asInt(0));
+                    break;
+                case Value.TYPE_LONG:
+                    editor.putLong(key, value.asLong(0));
+                    break;
+                case Value.TYPE_FLOAT:
+                    editor.putFloat(key, value.asFloat(0));
+                    break;
+                case Value.TYPE_BOOLEAN:
+                    editor.putBoolean(key, value.asBoolean(false));
+                    break;
+                default:
+                    editor.putString(key, value.asString());
+                    break;
+            }
+        }
+        editor.apply();
+    }
+
+    /**
+     * 提交一个空的同步写入。SharedPreferences 的磁盘写入按顺序执行，返回时之前 apply() 的数据都已写入磁盘。
+     */
+    @Override
+    public void flush() {
+        mPreferences.edit().commit();
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private static Value toValue(Object value) {
+        if (value instanceof String) {
+            return Value.of((String) value);
+        }else if (value instanceof Integer) {
+            return Value.of((int) (Integer) value);
+        }else if (value instanceof Long) {
+            return Value.of((long) (Long) value);
+        }else if (value instanceof Float) {
+            return Value.of((float) (Float) value);
+        }else if (value instanceof Boolean) {
+            return Value.of((boolean) (Boolean) value);
+        }else{
+            // StringSet 等类型不属于 KVDB 管理的数据
+            return null;
+        }
+    }
+}
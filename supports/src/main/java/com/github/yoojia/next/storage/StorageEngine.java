@@ -0,0 +1,42 @@
+package com.github.yoojia.next.storage;
+
+import java.util.Map;
+
+/**
+ * KVDB 底层存储引擎。BaseKVDB 只负责内存缓存和写入调度，数据如何落地由存储引擎决定。
+ * 引擎的实现必须是线程安全的。
+ *
+ * @author 陈小锅 (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+public interface StorageEngine {
+
+    /**
+     * 加载全部数据
+     * @return 全部键值数据
+     */
+    Map<String, Value> load();
+
+    /**
+     * 读取单个KEY的值。设置了内存预算的 KVDB 在缓存未命中时调用此方法。
+     * @param key 键
+     * @return 值，不存在时返回 null
+     */
+    Value read(String key);
+
+    /**
+     * 写入一组变更。同一组变更应当作为一次写入落地，先处理清空操作，再按顺序处理各KEY的变更。
+     * @param changes 变更
+     */
+    void apply(Changes changes);
+
+    /**
+     * 阻塞等待已写入的数据落地到磁盘
+     */
+    void flush();
+
+    /**
+     * 关闭存储引擎，释放文件等资源
+     */
+    void close();
+}
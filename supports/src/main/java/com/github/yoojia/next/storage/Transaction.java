@@ -0,0 +1,82 @@
+package com.github.yoojia.next.storage;
+
+import android.util.Log;
+
+/**
+ * KVDB 批量写入事务。事务中的变更在 commit() 时一次性写入内存缓存，并只触发一次存储引擎写入。
+ * 提交前的变更对 KVDB 的读取不可见。事务对象不是线程安全的。
+ *
+ * @author 陈小锅 (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+public class Transaction {
+
+    private final BaseKVDB mDB;
+    private final Changes mChanges = new Changes();
+    private boolean mCommitted = false;
+
+    Transaction(BaseKVDB db) {
+        mDB = db;
+    }
+
+    public Transaction set(String key, String value){
+        if (value == null || value.isEmpty()) {
+            Log.e("KVDB", "Ignore set empty value for KEY[" + key + "]. You can try remove(key).");
+            return this;
+        }
+        return put(key, Value.of(value));
+    }
+
+    public Transaction set(String key, int value){
+        return put(key, Value.of(value));
+    }
+
+    public Transaction set(String key, long value){
+        return put(key, Value.of(value));
+    }
+
+    public Transaction set(String key, float value){
+        return put(key, Value.of(value));
+    }
+
+    public Transaction set(String key, double value){
+        return put(key, Value.of(value));
+    }
+
+    public Transaction set(String key, boolean value){
+        return put(key, Value.of(value));
+    }
+
+    public Transaction remove(String key){
+        ensureNotCommitted();
+        mChanges.remove(key);
+        return this;
+    }
+
+    public Transaction clear(){
+        ensureNotCommitted();
+        mChanges.clear();
+        return this;
+    }
+
+    /**
+     * 提交事务。事务只能提交一次。
+     */
+    public void commit(){
+        ensureNotCommitted();
+        mCommitted = true;
+        mDB.commit(mChanges);
+    }
+
+    private Transaction put(String key, Value value){
+        ensureNotCommitted();
+        mChanges.put(key, value);
+        return this;
+    }
+
+    private void ensureNotCommitted(){
+        if (mCommitted) {
+            throw new IllegalStateException("Transaction already committed !");
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.github.yoojia.next.storage;
+
+/**
+ * KVDB 中保存的值。数值和布尔类型以原始位保存，读取时不需要装箱和字符串解析。
+ * 字符串类型的值在按数值读取时才会被解析，以兼容旧版本以字符串保存的数据。
+ *
+ * @author 陈小锅 (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+public final class Value {
+
+    public static final byte TYPE_STRING = 0;
+    public static final byte TYPE_INT = 1;
+    public static final byte TYPE_LONG = 2;
+    public static final byte TYPE_FLOAT = 3;
+    public static final byte TYPE_DOUBLE = 4;
+    public static final byte TYPE_BOOLEAN = 5;
+
+    private final byte mType;
+    private final long mBits;
+    private final String mText;
+
+    private Value(byte type, long bits, String text) {
+        mType = type;
+        mBits = bits;
+        mText = text;
+    }
+
+    public static Value of(String value){
+        if (value == null) {
+            throw new IllegalArgumentException("Value MUST not be null !");
+        }
+        return new Value(TYPE_STRING, 0, value);
+    }
+
+    public static Value of(int value){
+        return new Value(TYPE_INT, value, null);
+    }
+
+    public static Value of(long value){
+        return new Value(TYPE_LONG, value, null);
+    }
+
+    public static Value of(float value){
+        return new Value(TYPE_FLOAT, Float.floatToRawIntBits(value), null);
+    }
+
+    public static Value of(double value){
+        return new Value(TYPE_DOUBLE, Double.doubleToRawLongBits(value), null);
+    }
+
+    public static Value of(boolean value){
+        return new Value(TYPE_BOOLEAN, value ? 1 : 0, null);
+    }
+
+    /**
+     * 由类型和原始位创建值，用于存储引擎解码非字符串类型
+     * @param type 类型
+     * @param bits 原始位
+     * @return Value
+     */
+    public static Value fromBits(byte type, long bits){
+        if (type <= TYPE_STRING || type > TYPE_BOOLEAN) {
+            throw new IllegalArgumentException("Unknown value type: " + type);
+        }
+        return new Value(type, bits, null);
+    }
+
+    public byte type(){
+        return mType;
+    }
+
+    /**
+     * @return 非字符串类型的原始位
+     */
+    public long bits(){
+        return mBits;
+    }
+
+    public String asString(){
+        switch (mType) {
+            case TYPE_INT: return String.valueOf((int) mBits);
+            case TYPE_LONG: return String.valueOf(mBits);
+            case TYPE_FLOAT: return String.valueOf(Float.intBitsToFloat((int) mBits));
+            case TYPE_DOUBLE: return String.valueOf(Double.longBitsToDouble(mBits));
+            case TYPE_BOOLEAN: return String.valueOf(mBits != 0);
+            default: return mText;
+        }
+    }
+
+    public int asInt(int defValue){
+        switch (mType) {
+            case TYPE_INT:
+            case TYPE_LONG: return (int) mBits;
+            case TYPE_FLOAT: return (int) Float.intBitsToFloat((int) mBits);
+            case TYPE_DOUBLE: return (int) Double.longBitsToDouble(mBits);
+            case TYPE_STRING: return Integer.parseInt(mText);
+            default: return defValue;
+        }
+    }
+
+    public long asLong(long defValue){
+        switch (mType) {
+            case TYPE_INT:
+            case TYPE_LONG: return mBits;
+            case TYPE_FLOAT: return (long) Float.intBitsToFloat((int) mBits);
+            case TYPE_DOUBLE: return (long) Double.longBitsToDouble(mBits);
+            case TYPE_STRING: return Long.parseLong(mText);
+            default: return defValue;
+        }
+    }
+
+    public float asFloat(float defValue){
+        switch (mType) {
+            case TYPE_INT:
+            case TYPE_LONG: return mBits;
+            case TYPE_FLOAT: return Float.intBitsToFloat((int) mBits);
+            case TYPE_DOUBLE: return (float) Double.longBitsToDouble(mBits);
+            case TYPE_STRING: return Float.parseFloat(mText);
+            default: return defValue;
+        }
+    }
+
+    public double asDouble(double defValue){
+        switch (mType) {
+            case TYPE_INT:
+            case TYPE_LONG: return mBits;
+            case TYPE_FLOAT: return Float.intBitsToFloat((int) mBits);
+            case TYPE_DOUBLE: return Double.longBitsToDouble(mBits);
+            case TYPE_STRING: return Double.parseDouble(mText);
+            default: return defValue;
+        }
+    }
+
+    public boolean asBoolean(boolean defValue){
+        switch (mType) {
+            case TYPE_BOOLEAN: return mBits != 0;
+            case TYPE_STRING: return Boolean.parseBoolean(mText);
+            default: return defValue;
+        }
+    }
+
+    /**
+     * @return 估算的内存占用字节数
+     */
+    int estimateSize(){
+        // 对象头和字段约 24 字节；字符串另计 String 对象和 char 数组
+        return mText == null ? 24 : 24 + 40 + 2 * mText.length();
+    }
+
+    @Override
+    public String toString() {
+        return asString();
+    }
+}
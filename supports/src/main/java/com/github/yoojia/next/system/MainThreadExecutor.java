@@ -0,0 +1,186 @@
+package com.github.yoojia.next.system;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * 进程内共享的主线程执行器。execute() 在主线程中调用时直接执行；
+ * post() 提交的任务先放入队列，同一批任务只向主线程发送一条消息。
+ * 提交任务时可以指定标记，通过 cancel(token) 取消该标记下全部尚未执行的任务。
+ *
+ * @author 陈小锅 (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+public final class MainThreadExecutor implements Executor {
+
+    private static final MainThreadExecutor INSTANCE = new MainThreadExecutor();
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private final Object mLock = new Object();
+    /**
+     * 双缓冲队列：mQueued 接收新任务，mDraining 为主线程正在执行的一批任务
+     */
+    private ArrayList<Runnable> mQueued = new ArrayList<>();
+    private ArrayList<Object> mQueuedTokens = new ArrayList<>();
+    private ArrayList<Runnable> mDraining = new ArrayList<>();
+    private ArrayList<Object> mDrainingTokens = new ArrayList<>();
+    private boolean mScheduled = false;
+
+    private final Runnable mDrainTask = new Runnable() {
+        @Override public void run() {
+            drain();
+        }
+    };
+
+    private MainThreadExecutor() {
+    }
+
+    public static MainThreadExecutor get(){
+        return INSTANCE;
+    }
+
+    public static boolean isMainThread(){
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    /**
+     * 在主线程中执行任务，当前是主线程时直接执行
+     * @param task 任务
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (isMainThread()) {
+            task.run();
+        }else{
+            post(task, null);
+        }
+    }
+
+    /**
+     * 在主线程中执行任务，当前是主线程时直接执行，否则以指定标记提交到队列
+     * @param task 任务
+     * @param token 标记，可以为 null
+     */
+    public void execute(Runnable task, Object token) {
+        if (isMainThread()) {
+            task.run();
+        }else{
+            post(task, token);
+        }
+    }
+
+    public void post(Runnable task){
+        post(task, null);
+    }
+
+    /**
+     * 提交任务到队列，在主线程的下一批任务中执行
+     * @param task 任务
+     * @param token 标记，可以为 null
+     */
+    public void post(Runnable task, Object token){
+        if (task == null) {
+            throw new IllegalArgumentException("Task MUST not be null !");
+        }
+        synchronized (mLock) {
+            mQueued.add(task);
+            mQueuedTokens.add(token);
+            if (!mScheduled) {
+                mScheduled = true;
+                mHandler.post(mDrainTask);
+            }
+        }
+    }
+
+    public void postDelayed(Runnable task, long delayMillis){
+        postDelayed(task, null, delayMillis);
+    }
+
+    /**
+     * 延迟执行任务。延迟任务不合并，每个任务对应一条消息。
+     * @param task 任务
+     * @param token 标记，可以为 null
+     * @param delayMillis 延迟毫秒数
+     */
+    public void postDelayed(Runnable task, Object token, long delayMillis){
+        if (delayMillis <= 0) {
+            post(task, token);
+        }else{
+            mHandler.postAtTime(task, token, SystemClock.uptimeMillis() + delayMillis);
+        }
+    }
+
+    /**
+     * 移除全部尚未执行的指定任务
+     * @param task 任务
+     */
+    public void removeCallbacks(Runnable task){
+        mHandler.removeCallbacks(task);
+        synchronized (mLock) {
+            remove(mQueued, mQueuedTokens, task, null, false);
+            remove(mDraining, mDrainingTokens, task, null, false);
+        }
+    }
+
+    /**
+     * 取消指定标记下全部尚未执行的任务
+     * @param token 标记，不能为 null
+     */
+    public void cancel(Object token){
+        if (token == null) {
+            throw new IllegalArgumentException("Token MUST not be null !");
+        }
+        mHandler.removeCallbacksAndMessages(token);
+        synchronized (mLock) {
+            remove(mQueued, mQueuedTokens, null, token, true);
+            remove(mDraining, mDrainingTokens, null, token, true);
+        }
+    }
+
+    private static void remove(ArrayList<Runnable> tasks, ArrayList<Object> tokens,
+                               Runnable task, Object token, boolean byToken){
+        final int size = tasks.size();
+        for (int i = 0; i < size; i++) {
+            if (byToken ? tokens.get(i) == token : tasks.get(i) == task) {
+                // 置空而不是删除，正在执行的一批任务的下标保持不变
+                tasks.set(i, null);
+                tokens.set(i, null);
+            }
+        }
+    }
+
+    private void drain(){
+        final ArrayList<Runnable> draining;
+        synchronized (mLock) {
+            draining = mQueued;
+            mQueued = mDraining;
+            mDraining = draining;
+            final ArrayList<Object> tokens = mQueuedTokens;
+            mQueuedTokens = mDrainingTokens;
+            mDrainingTokens = tokens;
+            mScheduled = false;
+        }
+        final int size = draining.size();
+        try {
+            for (int i = 0; i < size; i++) {
+                final Runnable task;
+                synchronized (mLock) {
+                    task = draining.get(i);
+                }
+                if (task != null) {
+                    task.run();
+                }
+            }
+        } finally {
+            synchronized (mLock) {
+                draining.clear();
+                mDrainingTokens.clear();
+            }
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package com.github.yoojia.next.system;
 
 import android.app.Activity;
-import android.os.Handler;
-import android.os.Looper;
 import android.support.annotation.StringRes;
 import android.view.KeyEvent;
 import android.widget.Toast;
@@ -18,7 +16,7 @@ public class NextDoubleClick {
     private final AtomicBoolean mWaitingSecond = new AtomicBoolean(false);
     private final Activity mContext;
     private final String mMessage;
-    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final MainThreadExecutor mExecutor = MainThreadExecutor.get();
     private final Runnable mResetWaiting = new Runnable() {
         @Override
         public void run() {
@@ -48,7 +46,7 @@ public class NextDoubleClick {
             if ( ! mWaitingSecond.get()) {
                 mWaitingSecond.set(true);
                 Toast.makeText(mContext, mMessage, Toast.LENGTH_SHORT).show();
-                mHandler.postDelayed(mResetWaiting, mDoubleClickEscape);
+                mExecutor.postDelayed(mResetWaiting, mDoubleClickEscape);
                 return true;
             }else{
                 if (mOnDoubleClickListener != null) {
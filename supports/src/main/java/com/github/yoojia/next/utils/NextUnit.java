@@ -1,7 +1,10 @@
 package com.github.yoojia.next.utils;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
 
 public class NextUnit {
 
@@ -27,8 +30,66 @@ public class NextUnit {
         }
     }
 
+    private static final long[] POW10 = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L,
+            10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L,
+            1000000000000000L, 10000000000000000L, 100000000000000000L
+    };
+
+    private static final double MAX_EXACT = 1e18;
+
+    private static final double MAX_LONG = 9.223372036854775807E18;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>(){
+        @Override protected StringBuilder initialValue() {
+            return new StringBuilder(32);
+        }
+    };
+
+    /**
+     * 单位名的前缀树，用于解析时匹配单位
+     */
+    private static class UnitTrie{
+
+        char[] chars = new char[0];
+        UnitTrie[] children = new UnitTrie[0];
+        /**
+         * 以此节点结束的单位在 mSections 中的位置，没有时为 -1
+         */
+        int section = -1;
+
+        UnitTrie find(char c){
+            for (int i = 0; i < chars.length; i++) {
+                if (chars[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        UnitTrie child(char c){
+            final UnitTrie found = find(c);
+            if (found != null) {
+                return found;
+            }
+            final int size = chars.length;
+            final char[] grownChars = new char[size + 1];
+            final UnitTrie[] grownChildren = new UnitTrie[size + 1];
+            System.arraycopy(chars, 0, grownChars, 0, size);
+            System.arraycopy(children, 0, grownChildren, 0, size);
+            final UnitTrie child = new UnitTrie();
+            grownChars[size] = c;
+            grownChildren[size] = child;
+            chars = grownChars;
+            children = grownChildren;
+            return child;
+        }
+    }
+
     private final List<Section> mSections = new ArrayList<Section>();
 
+    private volatile UnitTrie mUnitTrie;
+
     /**
      * 各级单位的连接符
      */
@@ -44,6 +105,11 @@ public class NextUnit {
      */
     private boolean mEnforcePrecision = false;
 
+    /**
+     * 冻结后不能再修改，可以在多个线程中共享
+     */
+    private volatile boolean mFrozen = false;
+
     /**
      * 第一个单位，其基数为1.
      * @param unit 单位名称
@@ -72,8 +138,10 @@ public class NextUnit {
      * @return Tissue对象
      */
     public NextUnit next(String unit, int radix){
+        checkMutable();
         Section last = mSections.get(mSections.size() - 1);
         mSections.add(new Section(unit, last.radix * radix, radix));
+        mUnitTrie = null;
         return this;
     }
 
@@ -83,8 +151,10 @@ public class NextUnit {
      * @return Tissue对象
      */
     public NextUnit next(String unit){
+        checkMutable();
         Section last = mSections.get(mSections.size() - 1);
         mSections.add(new Section(unit, last.radix * last.preRadix, last.preRadix));
+        mUnitTrie = null;
         return this;
     }
 
@@ -94,6 +164,7 @@ public class NextUnit {
      * @return Tissue对象
      */
     public NextUnit setLinkChar(String linkChar){
+        checkMutable();
         this.mLinkChar = linkChar;
         return this;
     }
@@ -104,6 +175,7 @@ public class NextUnit {
      * @return Tissue对象
      */
     public NextUnit setPrecision(int precision){
+        checkMutable();
         this.mPrecision = precision;
         return this;
     }
@@ -113,32 +185,404 @@ public class NextUnit {
      * @param enforce
      */
     public NextUnit enforcePrecision(boolean enforce){
+        checkMutable();
         this.mEnforcePrecision = enforce;
         return this;
     }
 
+    /**
+     * 冻结当前对象，之后调用修改方法将抛出 IllegalStateException。
+     * 冻结后的 NextUnit 不可变，格式化和解析不需要加锁，可以在多个线程中共享。
+     * @return 当前对象
+     */
+    public NextUnit freeze(){
+        if (!mFrozen) {
+            unitTrie();
+            mFrozen = true;
+        }
+        return this;
+    }
+
+    public boolean isFrozen(){
+        return mFrozen;
+    }
+
+    /**
+     * @return 未冻结的副本，用于在共享的定义上修改参数
+     */
+    public NextUnit copy(){
+        final NextUnit copy = new NextUnit();
+        copy.mSections.addAll(mSections);
+        copy.mLinkChar = mLinkChar;
+        copy.mPrecision = mPrecision;
+        copy.mEnforcePrecision = mEnforcePrecision;
+        return copy;
+    }
+
+    private void checkMutable(){
+        if (mFrozen) {
+            throw new IllegalStateException("NextUnit is frozen !");
+        }
+    }
+
     /**
      * 格式化数值
      * @param value 数值
      * @return 格式化的数值
      */
     public String format(double value){
+        return formatTo(value, new StringBuilder()).toString();
+    }
+
+    /**
+     * 格式化数值并写入缓冲区，不创建中间字符串。小数部分按四舍五入（HALF_UP）输出，小数点固定为 '.'。
+     * @param value 数值
+     * @param out 缓冲区
+     * @return 缓冲区
+     */
+    public StringBuilder formatTo(double value, StringBuilder out){
         // 0值不需要转换
         if (value == 0){
             final Section sec = mSections.get(0);
-            return "0" + sec.unitName;
+            return out.append('0').append(sec.unitName);
         }
         final int deep = mSections.size() - 1;
         if (deep == 0){
-            return singleUnit(value);
+            singleUnit(value, out);
         }else{
-            return multiUnit(value, deep);
+            multiUnit(value, deep, out);
+        }
+        return out;
+    }
+
+    /**
+     * 格式化数值并写入指定输出
+     * @param value 数值
+     * @param out 输出
+     * @throws IOException 写入出错
+     */
+    public void formatTo(double value, Appendable out) throws IOException {
+        if (out instanceof StringBuilder) {
+            formatTo(value, (StringBuilder) out);
+            return;
         }
+        final StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        out.append(formatTo(value, buffer));
+    }
+
+    /**
+     * 按整数格式化数值，多级单位使用整数除法和取余计算，没有浮点误差和溢出
+     * @param value 数值
+     * @return 格式化的数值
+     */
+    public String format(long value){
+        return formatTo(value, new StringBuilder()).toString();
     }
 
-    private String singleUnit(double value){
+    public StringBuilder formatTo(long value, StringBuilder out){
+        if (value == 0){
+            final Section sec = mSections.get(0);
+            return out.append('0').append(sec.unitName);
+        }
+        final int deep = mSections.size() - 1;
+        if (deep == 0){
+            singleUnit(value, out);
+        }else{
+            multiUnit(value, deep, out);
+        }
+        return out;
+    }
+
+    private void singleUnit(long value, StringBuilder msg){
+        final Section sec = mSections.get(0);
+        // 在负数范围内计算，Long.MIN_VALUE 取反不会溢出
+        final long negative = value < 0 ? value : -value;
+        final long quotient = negative / sec.radix;
+        final long remainder = negative % sec.radix;
+        if (remainder == 0 && !mEnforcePrecision){
+            if (value < 0) {
+                msg.append('-');
+            }
+            appendNegated(msg, quotient);
+            msg.append(sec.unitName);
+        }else if (mPrecision >= 0 && mPrecision < POW10.length && -remainder <= Long.MAX_VALUE / POW10[mPrecision]) {
+            if (value < 0) {
+                msg.append('-');
+            }
+            final long scale = POW10[mPrecision];
+            // 小数部分四舍五入，比较余数与基数的一半时避免乘 2 溢出
+            final long scaled = -remainder * scale;
+            final long rest = scaled % sec.radix;
+            long fraction = scaled / sec.radix;
+            if (rest >= sec.radix - rest) {
+                fraction++;
+            }
+            long integer = quotient;
+            if (fraction >= scale) {
+                integer--;
+                fraction -= scale;
+            }
+            appendNegated(msg, integer);
+            if (mPrecision > 0) {
+                msg.append('.');
+                for (long p = scale / 10; p > 1 && fraction < p; p /= 10) {
+                    msg.append('0');
+                }
+                msg.append(fraction);
+            }
+            msg.append(sec.unitName);
+        }else{
+            singleUnit((double) value, msg);
+        }
+    }
+
+    private void multiUnit(long value, int deep, StringBuilder msg){
+        if (value < 0) {
+            msg.append('-');
+        }
+        // 在负数范围内计算，Long.MIN_VALUE 取反不会溢出
+        long remaining = value < 0 ? value : -value;
+        for (int i = deep; i >= 0; --i){
+            final Section sec = mSections.get(i);
+            final long result = remaining / sec.radix;
+            if (result == 0){
+                continue;
+            }
+            appendNegated(msg, result);
+            msg.append(sec.unitName);
+            remaining -= result * sec.radix;
+            // 如果不是最后一个计量单位，则添加连接符
+            if ( i > 0 && remaining != 0){
+                msg.append(mLinkChar);
+            }
+        }
+    }
+
+    /**
+     * 输出负数的相反数
+     */
+    private static void appendNegated(StringBuilder out, long negative){
+        if (negative == Long.MIN_VALUE) {
+            out.append("9223372036854775808");
+        }else{
+            out.append(-negative);
+        }
+    }
+
+    /**
+     * 解析格式化的数值，如 "1h 20m 3s"、"1.5GB"，是 format() 的逆操作。
+     * 各级单位可以任意顺序出现，单位之间可以有连接符和空白，数值和单位之间可以有空白，如 "1 h 20 m"；
+     * 小数按最小单位四舍五入。
+     * @param input 输入
+     * @return 以最小单位计的数值
+     * @throws IllegalArgumentException 输入格式错误、单位未定义或数值超出 long 范围
+     */
+    public long parse(CharSequence input){
+        final int length = input == null ? 0 : input.length();
+        int i = skipSeparators(input, 0, length);
+        final boolean negative = i < length && input.charAt(i) == '-';
+        if (negative || (i < length && input.charAt(i) == '+')) {
+            i++;
+        }
+        final UnitTrie trie = unitTrie();
+        // 在负数范围内累加，可以表示 Long.MIN_VALUE
+        long total = 0;
+        int parts = 0;
+        while ((i = skipSeparators(input, i, length)) < length) {
+            // 整数部分，同样在负数范围内累加
+            final int numberStart = i;
+            long integer = 0;
+            while (i < length && isDigit(input.charAt(i))) {
+                final int digit = input.charAt(i) - '0';
+                if (integer < (Long.MIN_VALUE + digit) / 10) {
+                    throw new IllegalArgumentException("Number overflow: " + input);
+                }
+                integer = integer * 10 - digit;
+                i++;
+            }
+            // 小数部分，超过 18 位的数字忽略
+            long fraction = 0;
+            int fractionDigits = 0;
+            if (i < length && input.charAt(i) == '.') {
+                i++;
+                while (i < length && isDigit(input.charAt(i))) {
+                    if (fractionDigits < 18) {
+                        fraction = fraction * 10 + (input.charAt(i) - '0');
+                        fractionDigits++;
+                    }
+                    i++;
+                }
+            }
+            if (i == numberStart || (i == numberStart + 1 && input.charAt(numberStart) == '.')) {
+                throw new IllegalArgumentException("Number expected at " + numberStart + ": " + input);
+            }
+            while (i < length && Character.isWhitespace(input.charAt(i))) {
+                i++;
+            }
+            // 最长匹配单位名
+            int section = -1;
+            UnitTrie node = trie;
+            int end = i;
+            for (int j = i; j < length && node != null; j++) {
+                node = node.find(input.charAt(j));
+                if (node != null && node.section >= 0) {
+                    section = node.section;
+                    end = j + 1;
+                }
+            }
+            if (section < 0) {
+                throw new IllegalArgumentException("Unknown unit at " + i + ": " + input);
+            }
+            i = end;
+            final long radix = mSections.get(section).radix;
+            if (integer < Long.MIN_VALUE / radix) {
+                throw new IllegalArgumentException("Value overflow: " + input);
+            }
+            final long rounded = fractionOf(fraction, fractionDigits, radix);
+            final long value = integer * radix;
+            if (value < Long.MIN_VALUE + rounded || total < Long.MIN_VALUE - (value - rounded)) {
+                throw new IllegalArgumentException("Value overflow: " + input);
+            }
+            total += value - rounded;
+            parts++;
+        }
+        if (parts == 0) {
+            throw new IllegalArgumentException("Empty input: " + input);
+        }
+        if (!negative && total == Long.MIN_VALUE) {
+            throw new IllegalArgumentException("Value overflow: " + input);
+        }
+        return negative ? total : -total;
+    }
+
+    /**
+     * 计算小数部分乘以基数的值，四舍五入到整数
+     */
+    private static long fractionOf(long fraction, int digits, long radix){
+        if (fraction == 0) {
+            return 0;
+        }
+        final long scale = POW10[digits];
+        if (fraction <= Long.MAX_VALUE / radix) {
+            final long scaled = fraction * radix;
+            final long rest = scaled % scale;
+            return scaled / scale + (rest >= scale - rest ? 1 : 0);
+        }
+        return Math.round((double) fraction / scale * radix);
+    }
+
+    private int skipSeparators(CharSequence input, int index, int length){
+        final String linkChar = mLinkChar;
+        final int linkLength = linkChar == null ? 0 : linkChar.length();
+        while (index < length) {
+            if (Character.isWhitespace(input.charAt(index))) {
+                index++;
+            }else if (linkLength > 0 && regionMatches(input, index, linkChar)) {
+                index += linkLength;
+            }else{
+                break;
+            }
+        }
+        return index;
+    }
+
+    private static boolean regionMatches(CharSequence input, int offset, String target){
+        final int length = target.length();
+        if (offset + length > input.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (input.charAt(offset + i) != target.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c){
+        return c >= '0' && c <= '9';
+    }
+
+    private UnitTrie unitTrie(){
+        UnitTrie trie = mUnitTrie;
+        if (trie == null) {
+            trie = new UnitTrie();
+            final int size = mSections.size();
+            for (int i = 0; i < size; i++) {
+                final String unitName = mSections.get(i).unitName;
+                if (unitName.isEmpty()) {
+                    throw new IllegalStateException("Cannot parse with empty unit name !");
+                }
+                UnitTrie node = trie;
+                for (int j = 0; j < unitName.length(); j++) {
+                    node = node.child(unitName.charAt(j));
+                }
+                node.section = i;
+            }
+            mUnitTrie = trie;
+        }
+        return trie;
+    }
+
+    public String[] format(double[] values, String[] output){
+        return format(values, output, null);
+    }
+
+    /**
+     * 批量格式化，同一段数值复用一个缓冲区
+     * @param values 数值
+     * @param output 结果数组，长度不能小于数值数量
+     * @param executor 数据量较大时用于并行格式化的 Executor，为 null 时在当前线程中执行。
+     *                 并行格式化期间不能修改当前对象，建议先调用 freeze()。
+     * @return 结果数组
+     */
+    public String[] format(final double[] values, final String[] output, Executor executor){
+        UnitBatch.checkOutput(values.length, output);
+        UnitBatch.run(values.length, executor, new UnitBatch.Range() {
+            @Override public void run(int from, int to) {
+                final StringBuilder buffer = new StringBuilder(32);
+                for (int i = from; i < to; i++) {
+                    buffer.setLength(0);
+                    output[i] = formatTo(values[i], buffer).toString();
+                }
+            }
+        });
+        return output;
+    }
+
+    public String[] format(long[] values, String[] output){
+        return format(values, output, null);
+    }
+
+    public String[] format(final long[] values, final String[] output, Executor executor){
+        UnitBatch.checkOutput(values.length, output);
+        UnitBatch.run(values.length, executor, new UnitBatch.Range() {
+            @Override public void run(int from, int to) {
+                final StringBuilder buffer = new StringBuilder(32);
+                for (int i = from; i < to; i++) {
+                    buffer.setLength(0);
+                    output[i] = formatTo(values[i], buffer).toString();
+                }
+            }
+        });
+        return output;
+    }
+
+    /**
+     * 冻结当前对象并创建带缓存的格式化对象，适用于重复格式化少量不同数值的场景，如列表绑定
+     * @param capacity 缓存槽位数量，会向上取整为 2 的幂
+     * @return NextUnitMemo
+     */
+    public NextUnitMemo memoize(int capacity){
+        return new NextUnitMemo(freeze(), capacity);
+    }
+
+    private void singleUnit(double value, StringBuilder msg){
         // 处理负数问题
-        final StringBuilder msg = new StringBuilder( value < 0 ? "-" : "" );
+        if (value < 0) {
+            msg.append('-');
+        }
         value = Math.abs(value);
         final Section sec = mSections.get(0);
         double result = value / sec.radix;
@@ -147,33 +591,73 @@ public class NextUnit {
         if (result == intResult && !mEnforcePrecision){
             msg.append(intResult);
         }else{
-            msg.append(String.format("%." + mPrecision + "f", result));
+            appendFixed(msg, result, mPrecision);
         }
         msg.append(sec.unitName);
-        return msg.toString();
     }
 
-    private String multiUnit(double value, int deep){
+    private void multiUnit(double value, int deep, StringBuilder msg){
+        // 整数值使用整数计算，没有浮点误差
+        if (value == (long) value && Math.abs(value) < MAX_LONG){
+            multiUnit((long) value, deep, msg);
+            return;
+        }
         // 处理负数问题
-        final StringBuilder msg = new StringBuilder( value < 0 ? "-" : "" );
+        if (value < 0) {
+            msg.append('-');
+        }
         value = Math.abs(value);
         for (int i = deep; i >= 0; --i){
             Section sec = mSections.get(i);
             double result = value / sec.radix;
-            int intResult = (int)result;
+            long intResult = (long)result;
             if (intResult <= 0){
                 continue;
             }else{
                 msg.append(intResult);
             }
             msg.append(sec.unitName);
-            value -= intResult * sec.radix;
+            value -= intResult * (double) sec.radix;
             // 如果不是最后一个计量单位，则添加连接符
             if ( i > 0 && value != 0){
                 msg.append(mLinkChar);
             }
         }
-        return msg.toString();
+    }
+
+    /**
+     * 按指定小数位数输出非负数值，结果与 String.format() 相同。只有舍入结果不确定时才使用 String.format()。
+     * @param out 缓冲区
+     * @param value 非负数值
+     * @param precision 小数位数
+     */
+    static void appendFixed(StringBuilder out, double value, int precision){
+        if (precision >= 0 && precision < POW10.length && value < MAX_EXACT) {
+            // 整数部分和小数部分分开计算，减去整数部分没有误差
+            long integer = (long) value;
+            final long scale = POW10[precision];
+            final double scaled = (value - integer) * scale + 0.5;
+            // 数值的十进制表示在 ulp 范围内不确定，此范围跨过舍入边界时交给 String.format() 处理
+            final double error = Math.ulp(value) * scale;
+            long fraction = (long) scaled;
+            if (fraction == (long) (scaled - error) && fraction == (long) (scaled + error)) {
+                if (fraction >= scale) {
+                    integer++;
+                    fraction -= scale;
+                }
+                out.append(integer);
+                if (precision > 0) {
+                    out.append('.');
+                    // 补足小数部分的前导 0
+                    for (long p = scale / 10; p > 1 && fraction < p; p /= 10) {
+                        out.append('0');
+                    }
+                    out.append(fraction);
+                }
+                return;
+            }
+        }
+        out.append(String.format(Locale.US, "%." + precision + "f", value));
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,133 @@
+package com.github.yoojia.next.utils;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 带有限缓存的 NextUnit 格式化。缓存按数值直接映射到固定大小的槽位，冲突时覆盖旧结果，
+ * 查找不需要装箱也不需要加锁，可以在多个线程中共享。
+ *
+ * <pre>
+ * final NextUnitMemo memo = NextUnits.BYTES.memoize(256);
+ * final String text = memo.format(size);
+ * </pre>
+ *
+ * @author YOOJIA.CHEN (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+public final class NextUnitMemo {
+
+    private static final int MAX_CAPACITY = 1 << 16;
+
+    private static final class Entry {
+
+        final boolean integral;
+        final long key;
+        final String text;
+
+        Entry(boolean integral, long key, String text) {
+            this.integral = integral;
+            this.key = key;
+            this.text = text;
+        }
+    }
+
+    private final NextUnit mUnit;
+    /**
+     * 槽位中的 Entry 不可变，并发读写时只会读到完整的旧值或新值
+     */
+    private final Entry[] mEntries;
+    private final int mMask;
+
+    NextUnitMemo(NextUnit unit, int capacity) {
+        if (!unit.isFrozen()) {
+            throw new IllegalArgumentException("NextUnit MUST be frozen before memoize !");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity MUST be positive !");
+        }
+        int size = 1;
+        while (size < capacity && size < MAX_CAPACITY) {
+            size <<= 1;
+        }
+        mUnit = unit;
+        mEntries = new Entry[size];
+        mMask = size - 1;
+    }
+
+    public NextUnit unit(){
+        return mUnit;
+    }
+
+    public String format(double value){
+        final long key = Double.doubleToLongBits(value);
+        final int slot = slot(key);
+        final Entry entry = mEntries[slot];
+        if (entry != null && !entry.integral && entry.key == key) {
+            return entry.text;
+        }
+        final String text = mUnit.format(value);
+        mEntries[slot] = new Entry(false, key, text);
+        return text;
+    }
+
+    public String format(long value){
+        final int slot = slot(value);
+        final Entry entry = mEntries[slot];
+        if (entry != null && entry.integral && entry.key == value) {
+            return entry.text;
+        }
+        final String text = mUnit.format(value);
+        mEntries[slot] = new Entry(true, value, text);
+        return text;
+    }
+
+    public String[] format(double[] values, String[] output){
+        return format(values, output, null);
+    }
+
+    /**
+     * 批量格式化
+     * @param values 数值
+     * @param output 结果数组，长度不能小于数值数量
+     * @param executor 数据量较大时用于并行格式化的 Executor，为 null 时在当前线程中执行
+     * @return 结果数组
+     */
+    public String[] format(final double[] values, final String[] output, Executor executor){
+        UnitBatch.checkOutput(values.length, output);
+        UnitBatch.run(values.length, executor, new UnitBatch.Range() {
+            @Override public void run(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    output[i] = format(values[i]);
+                }
+            }
+        });
+        return output;
+    }
+
+    public String[] format(long[] values, String[] output){
+        return format(values, output, null);
+    }
+
+    public String[] format(final long[] values, final String[] output, Executor executor){
+        UnitBatch.checkOutput(values.length, output);
+        UnitBatch.run(values.length, executor, new UnitBatch.Range() {
+            @Override public void run(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    output[i] = format(values[i]);
+                }
+            }
+        });
+        return output;
+    }
+
+    public void clear(){
+        for (int i = 0; i < mEntries.length; i++) {
+            mEntries[i] = null;
+        }
+    }
+
+    private int slot(long key){
+        final int hash = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mMask;
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.yoojia.next.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内共享的 NextUnit 注册表。注册的 NextUnit 会被冻结，可以在任意线程中直接使用。
+ *
+ * @author YOOJIA.CHEN (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+public final class NextUnits {
+
+    public static final String NAME_BYTES = "bytes";
+    public static final String NAME_DURATION = "duration";
+    public static final String NAME_DISTANCE = "distance";
+
+    /**
+     * 字节数，如 "1GB 512MB"
+     */
+    public static final NextUnit BYTES = NextUnit.first("B")
+            .next("KB", 1024).next("MB").next("GB").next("TB")
+            .setLinkChar(" ")
+            .freeze();
+
+    /**
+     * 毫秒数，如 "1h 20m 3s"
+     */
+    public static final NextUnit DURATION = NextUnit.first("ms")
+            .next("s", 1000).next("m", 60).next("h", 60).next("d", 24)
+            .setLinkChar(" ")
+            .freeze();
+
+    /**
+     * 米数，如 "3km 200m"
+     */
+    public static final NextUnit DISTANCE = NextUnit.first("m")
+            .next("km", 1000)
+            .setLinkChar(" ")
+            .freeze();
+
+    private static final ConcurrentHashMap<String, NextUnit> REGISTRY = new ConcurrentHashMap<>();
+
+    static {
+        REGISTRY.put(NAME_BYTES, BYTES);
+        REGISTRY.put(NAME_DURATION, DURATION);
+        REGISTRY.put(NAME_DISTANCE, DISTANCE);
+    }
+
+    private NextUnits() {
+    }
+
+    /**
+     * 注册共享的 NextUnit，同名的定义会被替换
+     * @param name 名称
+     * @param unit NextUnit，注册时会被冻结
+     */
+    public static void register(String name, NextUnit unit){
+        if (name == null || unit == null) {
+            throw new IllegalArgumentException("Name and unit MUST not be null !");
+        }
+        REGISTRY.put(name, unit.freeze());
+    }
+
+    /**
+     * @param name 名称
+     * @return 已注册的 NextUnit，不存在时返回 null
+     */
+    public static NextUnit get(String name){
+        return REGISTRY.get(name);
+    }
+
+    public static void unregister(String name){
+        REGISTRY.remove(name);
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.yoojia.next.utils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 批量格式化的分段执行。数据量较小或没有指定 Executor 时在当前线程中执行。
+ *
+ * @author YOOJIA.CHEN (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+final class UnitBatch {
+
+    /**
+     * 少于此数量时不并行执行
+     */
+    static final int PARALLEL_THRESHOLD = 2048;
+
+    private static final int MIN_CHUNK_SIZE = 1024;
+
+    interface Range {
+        void run(int from, int to);
+    }
+
+    private UnitBatch() {
+    }
+
+    static void checkOutput(int size, Object[] output){
+        if (output.length < size) {
+            throw new IllegalArgumentException("Output array is too small, required: " + size);
+        }
+    }
+
+    /**
+     * 分段执行，当前线程也执行其中一段，全部完成后返回
+     * @param size 数据量
+     * @param executor 执行其它分段的 Executor，为 null 时全部在当前线程中执行
+     * @param range 分段任务
+     */
+    static void run(int size, Executor executor, final Range range){
+        if (executor == null || size < PARALLEL_THRESHOLD) {
+            range.run(0, size);
+            return;
+        }
+        final int chunks = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors() * 2, size / MIN_CHUNK_SIZE));
+        final int chunkSize = (size + chunks - 1) / chunks;
+        final CountDownLatch latch = new CountDownLatch(chunks - 1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int from = chunkSize; from < size; from += chunkSize) {
+            final int start = from;
+            final int end = Math.min(size, from + chunkSize);
+            final Runnable task = new Runnable() {
+                @Override public void run() {
+                    try {
+                        range.run(start, end);
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            };
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        }
+        range.run(0, Math.min(size, chunkSize));
+        awaitUninterruptibly(latch);
+        final Throwable error = failure.get();
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }else if (error instanceof Error) {
+            throw (Error) error;
+        }else if (error != null) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch){
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -2,11 +2,11 @@ package com.github.yoojia.next.widget;
 
 import android.app.Dialog;
 import android.content.Context;
-import android.os.Handler;
-import android.os.Looper;
+import android.view.View;
 import android.widget.TextView;
 
 import com.github.yoojia.next.R;
+import com.github.yoojia.next.system.MainThreadExecutor;
 
 
 /**
@@ -15,11 +15,21 @@ import com.github.yoojia.next.R;
  */
 public class NextProgress extends Dialog {
 
-    private final Handler mHandler;
+    private final MainThreadExecutor mExecutor = MainThreadExecutor.get();
     private final TextView mMessage;
     private CharSequence mMessageText;
     private int mMessageId;
 
+    /**
+     * show() 提交的显示任务不使用标记，onStop() 时不会被取消
+     */
+    private final Runnable mShowTask = new Runnable() {
+        @Override
+        public void run() {
+            showOnMainThread();
+        }
+    };
+
     private final Runnable mShowDelayTask = new Runnable() {
         @Override
         public void run() {
@@ -43,9 +53,14 @@ public class NextProgress extends Dialog {
 
     public NextProgress(Context context) {
         super(context, R.style.next_progress);
-        setContentView(R.layout.next_progress);
+        // 优先使用 NextViewPool 在后台线程中预先加载的布局
+        final View content = NextViewPool.obtain(R.layout.next_progress);
+        if (content != null) {
+            setContentView(content, content.getLayoutParams());
+        }else{
+            setContentView(R.layout.next_progress);
+        }
         setCancelable(false);
-        mHandler = new Handler();
         mMessage = (TextView) findViewById(R.id.message);
     }
 
@@ -70,23 +85,22 @@ public class NextProgress extends Dialog {
     }
 
     public void showDelay(long delayMillis) {
-        mHandler.postDelayed(mShowDelayTask, delayMillis);
+        mExecutor.postDelayed(mShowDelayTask, this, delayMillis);
     }
 
     public void hideDelay(long delayMillis) {
-        mHandler.postDelayed(mHideDelayTask, delayMillis);
+        mExecutor.postDelayed(mHideDelayTask, this, delayMillis);
     }
 
     public void dismissDelay(long delayMillis) {
-        mHandler.postDelayed(mDismissDelayTask, delayMillis);
+        mExecutor.postDelayed(mDismissDelayTask, this, delayMillis);
     }
 
     @Override
     protected void onStop() {
         super.onStop();
-        mHandler.removeCallbacks(mShowDelayTask);
-        mHandler.removeCallbacks(mHideDelayTask);
-        mHandler.removeCallbacks(mDismissDelayTask);
+        // 只取消 showDelay()、hideDelay() 和 dismissDelay() 提交的延迟任务
+        mExecutor.cancel(this);
     }
 
     /**
@@ -94,16 +108,7 @@ public class NextProgress extends Dialog {
      */
     @Override
     public void show() {
-        if (Looper.myLooper() == Looper.getMainLooper()) {
-            showOnMainThread();
-        }else{
-            mHandler.post(new Runnable() {
-                @Override
-                public void run() {
-                    showOnMainThread();
-                }
-            });
-        }
+        mExecutor.execute(mShowTask);
     }
 
     private void showOnMainThread(){
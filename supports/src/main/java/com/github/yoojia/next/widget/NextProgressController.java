@@ -0,0 +1,168 @@
+package com.github.yoojia.next.widget;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import com.github.yoojia.next.system.MainThreadExecutor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多个并发任务共用的 NextProgress 控制器。每个任务开始时调用 begin()，结束时调用 end()，可以在任意线程中调用。
+ * 任务持续超过显示延迟时才显示进度框；显示后至少保持最短显示时间，全部任务结束后才关闭。
+ * 任务开始和结束时只更新计数，不创建对象。
+ *
+ * <pre>
+ * final NextProgressController progress = NextProgressController.create(activity);
+ * progress.begin();
+ * // 任务结束后
+ * progress.end();
+ * </pre>
+ *
+ * @author YOOJIA.CHEN (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+public class NextProgressController {
+
+    private final NextProgress mProgress;
+    private final MainThreadExecutor mExecutor = MainThreadExecutor.get();
+    private final AtomicInteger mActiveCount = new AtomicInteger(0);
+
+    private volatile long mShowDelay = 300;
+    private volatile long mMinVisible = 500;
+
+    /**
+     * 以下状态只在主线程中访问
+     */
+    private boolean mShowScheduled = false;
+    private long mShownAt = -1;
+
+    private final Runnable mUpdateTask = new Runnable() {
+        @Override public void run() {
+            update();
+        }
+    };
+
+    private final Runnable mShowTask = new Runnable() {
+        @Override public void run() {
+            mShowScheduled = false;
+            if (mActiveCount.get() > 0 && mShownAt < 0) {
+                mProgress.show();
+                mShownAt = SystemClock.uptimeMillis();
+            }
+        }
+    };
+
+    private final Runnable mHideTask = new Runnable() {
+        @Override public void run() {
+            if (mActiveCount.get() == 0 && mShownAt >= 0) {
+                mProgress.dismiss();
+                mShownAt = -1;
+            }
+        }
+    };
+
+    private final Runnable mReleaseTask = new Runnable() {
+        @Override public void run() {
+            mExecutor.removeCallbacks(mShowTask);
+            mExecutor.removeCallbacks(mHideTask);
+            mShowScheduled = false;
+            if (mShownAt >= 0) {
+                mProgress.dismiss();
+                mShownAt = -1;
+            }
+        }
+    };
+
+    public NextProgressController(NextProgress progress) {
+        mProgress = progress;
+    }
+
+    /**
+     * 设置显示延迟，任务在此时间内结束时不显示进度框
+     * @param millis 延迟毫秒数，默认 300
+     * @return NextProgressController
+     */
+    public NextProgressController setShowDelay(long millis){
+        mShowDelay = millis;
+        return this;
+    }
+
+    /**
+     * 设置最短显示时间，避免进度框一闪而过
+     * @param millis 最短显示毫秒数，默认 500
+     * @return NextProgressController
+     */
+    public NextProgressController setMinVisible(long millis){
+        mMinVisible = millis;
+        return this;
+    }
+
+    public NextProgress getProgress(){
+        return mProgress;
+    }
+
+    /**
+     * 任务开始，可以在任意线程中调用
+     */
+    public void begin(){
+        if (mActiveCount.getAndIncrement() == 0) {
+            mExecutor.post(mUpdateTask);
+        }
+    }
+
+    /**
+     * 任务结束，可以在任意线程中调用。release() 之后才结束的任务，其 end() 调用会被忽略。
+     */
+    public void end(){
+        final int count = mActiveCount.decrementAndGet();
+        if (count < 0) {
+            mActiveCount.incrementAndGet();
+            return;
+        }
+        if (count == 0) {
+            mExecutor.post(mUpdateTask);
+        }
+    }
+
+    /**
+     * @return 未结束的任务数量
+     */
+    public int getActiveCount(){
+        return mActiveCount.get();
+    }
+
+    /**
+     * 清空任务计数并立即关闭进度框，用于 Activity 销毁时
+     */
+    public void release(){
+        mActiveCount.set(0);
+        mExecutor.removeCallbacks(mUpdateTask);
+        mExecutor.execute(mReleaseTask);
+    }
+
+    private void update(){
+        if (mActiveCount.get() > 0) {
+            mExecutor.removeCallbacks(mHideTask);
+            if (mShownAt < 0 && !mShowScheduled) {
+                mShowScheduled = true;
+                mExecutor.postDelayed(mShowTask, mShowDelay);
+            }
+        }else{
+            mExecutor.removeCallbacks(mShowTask);
+            mShowScheduled = false;
+            if (mShownAt >= 0) {
+                final long remaining = mShownAt + mMinVisible - SystemClock.uptimeMillis();
+                if (remaining > 0) {
+                    mExecutor.postDelayed(mHideTask, remaining);
+                }else{
+                    mHideTask.run();
+                }
+            }
+        }
+    }
+
+    public static NextProgressController create(Context context){
+        return new NextProgressController(NextProgress.create(context));
+    }
+}
@@ -2,16 +2,8 @@ package com.github.yoojia.next.widget;
 
 import android.content.Context;
 import android.content.res.Resources;
-import android.os.Handler;
-import android.os.Looper;
 import android.support.annotation.DrawableRes;
 import android.support.annotation.StringRes;
-import android.text.TextUtils;
-import android.view.Gravity;
-import android.view.LayoutInflater;
-import android.view.View;
-import android.widget.ImageView;
-import android.widget.TextView;
 import android.widget.Toast;
 
 import com.github.yoojia.next.R;
@@ -22,23 +14,19 @@ import com.github.yoojia.next.R;
  */
 public class NextToast {
 
-    private final Toast mToast;
-    private final ImageView mIcon;
-    private final TextView mMessage;
+    private final Context mContext;
     private final Resources mRes;
-
-    private final Handler mHandler;
     private Style mStyle;
 
+    /**
+     * 创建 NextToast 不会加载布局，提示由进程内共享的分发器显示，每种样式只加载一次布局。
+     * @param context Context
+     * @param style 样式
+     */
     public NextToast(Context context, Style style) {
         mStyle = style;
-        mToast = new Toast(context);
+        mContext = context;
         mRes = context.getResources();
-        mHandler = new Handler(Looper.getMainLooper());
-        final View view = LayoutInflater.from(context).inflate(R.layout.next_toast, null);
-        mToast.setView(view);
-        mIcon = (ImageView) view.findViewById(R.id.icon);
-        mMessage = (TextView) view.findViewById(R.id.message);
     }
 
     /**
@@ -135,28 +123,24 @@ public class NextToast {
         return new NextToast(context, Style.WARN);
     }
 
-    private void show(@DrawableRes final int iconResId, final String message, final int duration) {
-        final Runnable task = new Runnable() {
-            @Override public void run() {
-                if (iconResId != 0) {
-                    mIcon.setVisibility(View.VISIBLE);
-                    mIcon.setImageResource(iconResId);
-                }else{
-                    mIcon.setVisibility(View.GONE);
-                }
-                if ( ! TextUtils.isEmpty(message)) {
-                    mMessage.setText(message);
-                }
-                mToast.setDuration(duration);
-                mToast.setGravity(Gravity.CENTER, 0, 0);
-                mToast.show();
-            }
-        };
-        if (Looper.getMainLooper() == Looper.myLooper()) {
-            task.run();
-        }else{
-            mHandler.post(task);
-        }
+    private void show(@DrawableRes int iconResId, String message, int duration) {
+        ToastDispatcher.get(mContext).enqueue(mStyle, iconResId, message, duration);
+    }
+
+    /**
+     * 设置相同提示的去重时间窗口，窗口内重复提交的相同提示只显示一次
+     * @param millis 时间窗口毫秒数，默认 2000
+     */
+    public static void setDedupeWindow(long millis){
+        ToastDispatcher.setDedupeWindow(millis);
+    }
+
+    /**
+     * 设置连续提示之间的最小间隔
+     * @param millis 最小间隔毫秒数，默认 300
+     */
+    public static void setMinInterval(long millis){
+        ToastDispatcher.setMinInterval(millis);
     }
 
     public enum Style{
@@ -0,0 +1,162 @@
+package com.github.yoojia.next.widget;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.support.annotation.LayoutRes;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import com.github.yoojia.next.R;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 在后台线程中预先加载布局的 View 池。NextToast 和 NextProgress 首次显示时优先从池中取出已加载的 View，
+ * 避免在主线程中加载布局。建议在 Application.onCreate() 中调用 warmUp()。
+ * 池中的 View 使用 ApplicationContext 加载。
+ *
+ * @author YOOJIA.CHEN (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+public final class NextViewPool {
+
+    private static final String TAG = "NextViewPool";
+
+    /**
+     * 每个布局最多保留的 View 数量
+     */
+    private static final int MAX_POOLED = 4;
+
+    private static final Map<Integer, ArrayDeque<View>> POOL = new HashMap<>();
+
+    private NextViewPool() {
+    }
+
+    /**
+     * 在后台线程中预先加载 NextToast 和 NextProgress 的布局
+     * @param context Context
+     */
+    public static void warmUp(Context context){
+        warmUp(context, 1, 1);
+    }
+
+    /**
+     * 在后台线程中预先加载 NextToast 和 NextProgress 的布局
+     * @param context Context
+     * @param toastCount NextToast 布局数量，每种样式首次显示时各使用一个
+     * @param progressCount NextProgress 布局数量，每创建一个 NextProgress 使用一个
+     */
+    public static void warmUp(Context context, final int toastCount, final int progressCount){
+        final Context app = applicationContext(context);
+        runInBackground(new Runnable() {
+            @Override public void run() {
+                inflate(app, R.layout.next_toast, toastCount);
+                inflate(new ContextThemeWrapper(app, R.style.next_progress), R.layout.next_progress, progressCount);
+            }
+        });
+    }
+
+    /**
+     * 在后台线程中预先加载指定布局
+     * @param context Context
+     * @param layoutResId 布局资源ID
+     * @param count 数量
+     */
+    public static void preload(Context context, @LayoutRes final int layoutResId, final int count){
+        final Context app = applicationContext(context);
+        runInBackground(new Runnable() {
+            @Override public void run() {
+                inflate(app, layoutResId, count);
+            }
+        });
+    }
+
+    /**
+     * 从池中取出已加载的 View。View 保留了布局根节点的 LayoutParams，可以通过 getLayoutParams() 获取。
+     * @param layoutResId 布局资源ID
+     * @return View，池中没有时返回 null
+     */
+    public static View obtain(@LayoutRes int layoutResId){
+        synchronized (POOL) {
+            final ArrayDeque<View> views = POOL.get(layoutResId);
+            return views == null ? null : views.pollFirst();
+        }
+    }
+
+    /**
+     * 从池中取出已加载的 View，池中没有时在当前线程中加载
+     * @param context Context
+     * @param layoutResId 布局资源ID
+     * @return View
+     */
+    static View obtainOrInflate(Context context, @LayoutRes int layoutResId){
+        final View pooled = obtain(layoutResId);
+        if (pooled != null) {
+            return pooled;
+        }
+        return LayoutInflater.from(context).inflate(layoutResId, null);
+    }
+
+    public static void clear(){
+        synchronized (POOL) {
+            POOL.clear();
+        }
+    }
+
+    private static void inflate(Context context, int layoutResId, int count){
+        final LayoutInflater inflater = LayoutInflater.from(context);
+        // 以临时父容器加载但不添加到其中，保留布局根节点的 LayoutParams
+        final FrameLayout parent = new FrameLayout(context);
+        for (int i = 0; i < count; i++) {
+            synchronized (POOL) {
+                final ArrayDeque<View> views = POOL.get(layoutResId);
+                if (views != null && views.size() >= MAX_POOLED) {
+                    return;
+                }
+            }
+            final View view;
+            try {
+                view = inflater.inflate(layoutResId, parent, false);
+            } catch (RuntimeException e) {
+                // 部分布局不能在后台线程中加载，此时由使用者在主线程中加载
+                Log.e(TAG, "Pre-inflate layout failed", e);
+                return;
+            }
+            synchronized (POOL) {
+                ArrayDeque<View> views = POOL.get(layoutResId);
+                if (views == null) {
+                    views = new ArrayDeque<>(MAX_POOLED);
+                    POOL.put(layoutResId, views);
+                }
+                views.offerLast(view);
+            }
+        }
+    }
+
+    private static void runInBackground(final Runnable task){
+        final HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        // 使用带 Looper 的线程，布局中的控件可以在构造时创建 Handler
+        new Handler(thread.getLooper()).post(new Runnable() {
+            @Override public void run() {
+                try {
+                    task.run();
+                } finally {
+                    thread.quit();
+                }
+            }
+        });
+    }
+
+    private static Context applicationContext(Context context){
+        final Context app = context.getApplicationContext();
+        return app == null ? context : app;
+    }
+}
@@ -0,0 +1,201 @@
+package com.github.yoojia.next.widget;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.ImageView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.github.yoojia.next.R;
+import com.github.yoojia.next.system.MainThreadExecutor;
+
+import java.util.ArrayDeque;
+
+/**
+ * 进程内共享的 Toast 分发器。每种样式只创建一个 View 和 Toast 并重复使用；
+ * 时间窗口内相同的提示只显示一次，连续的提示按最小间隔依次显示，超出队列上限时丢弃最早的提示。
+ * 可以在任意线程中提交提示，同一时刻最多只有一个待执行的主线程任务。
+ *
+ * @author YOOJIA.CHEN (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+final class ToastDispatcher {
+
+    private static final int MAX_PENDING = 3;
+    /**
+     * 用于去重的最近显示记录数量上限
+     */
+    private static final int MAX_RECENT = 8;
+
+    private static ToastDispatcher sInstance;
+
+    private static volatile long sDedupeWindow = 2000;
+    private static volatile long sMinInterval = 300;
+
+    private static final class Request {
+
+        final NextToast.Style style;
+        final int iconResId;
+        final CharSequence message;
+        final int duration;
+        /**
+         * 显示时间，只在持有 mLock 时访问
+         */
+        long shownAt;
+
+        Request(NextToast.Style style, int iconResId, CharSequence message, int duration) {
+            this.style = style;
+            this.iconResId = iconResId;
+            this.message = message;
+            this.duration = duration;
+        }
+
+        boolean same(Request other){
+            return other != null
+                    && style == other.style
+                    && iconResId == other.iconResId
+                    && duration == other.duration
+                    && TextUtils.equals(message, other.message);
+        }
+    }
+
+    /**
+     * 每种样式复用的 Toast 及其 View，只在主线程中创建和访问
+     */
+    private static final class Slot {
+
+        final Toast toast;
+        final ImageView icon;
+        final TextView message;
+
+        Slot(Context context) {
+            toast = new Toast(context);
+            final View view = NextViewPool.obtainOrInflate(context, R.layout.next_toast);
+            toast.setView(view);
+            toast.setGravity(Gravity.CENTER, 0, 0);
+            icon = (ImageView) view.findViewById(R.id.icon);
+            message = (TextView) view.findViewById(R.id.message);
+        }
+    }
+
+    private final Context mContext;
+    private final MainThreadExecutor mExecutor = MainThreadExecutor.get();
+    private final Slot[] mSlots = new Slot[NextToast.Style.values().length];
+
+    private final Object mLock = new Object();
+    private final ArrayDeque<Request> mPending = new ArrayDeque<>(MAX_PENDING);
+    private final ArrayDeque<Request> mRecent = new ArrayDeque<>(MAX_RECENT);
+    private boolean mScheduled = false;
+    private long mLastShownAt;
+
+    private final Runnable mDispatchTask = new Runnable() {
+        @Override public void run() {
+            dispatch();
+        }
+    };
+
+    private ToastDispatcher(Context context) {
+        mContext = context;
+    }
+
+    static ToastDispatcher get(Context context){
+        synchronized (ToastDispatcher.class) {
+            if (sInstance == null) {
+                final Context app = context.getApplicationContext();
+                sInstance = new ToastDispatcher(app == null ? context : app);
+            }
+            return sInstance;
+        }
+    }
+
+    static void setDedupeWindow(long millis){
+        sDedupeWindow = millis;
+    }
+
+    static void setMinInterval(long millis){
+        sMinInterval = millis;
+    }
+
+    /**
+     * 提交提示，可以在任意线程中调用
+     */
+    void enqueue(NextToast.Style style, int iconResId, CharSequence message, int duration){
+        final Request request = new Request(style, iconResId, message, duration);
+        synchronized (mLock) {
+            // 时间窗口内已显示过或已在队列中的相同提示直接丢弃
+            final long now = SystemClock.uptimeMillis();
+            while (!mRecent.isEmpty() && now - mRecent.peekFirst().shownAt >= sDedupeWindow) {
+                mRecent.pollFirst();
+            }
+            for (Request recent : mRecent) {
+                if (request.same(recent)) {
+                    return;
+                }
+            }
+            for (Request pending : mPending) {
+                if (request.same(pending)) {
+                    return;
+                }
+            }
+            if (mPending.size() >= MAX_PENDING) {
+                mPending.pollFirst();
+            }
+            mPending.offerLast(request);
+            if (!mScheduled) {
+                mScheduled = true;
+                final long wait = mLastShownAt + sMinInterval - now;
+                if (wait > 0) {
+                    mExecutor.postDelayed(mDispatchTask, wait);
+                }else{
+                    mExecutor.post(mDispatchTask);
+                }
+            }
+        }
+    }
+
+    private void dispatch(){
+        final Request request;
+        synchronized (mLock) {
+            request = mPending.pollFirst();
+            final long now = SystemClock.uptimeMillis();
+            if (request != null) {
+                request.shownAt = now;
+                mLastShownAt = now;
+                if (mRecent.size() >= MAX_RECENT) {
+                    mRecent.pollFirst();
+                }
+                mRecent.offerLast(request);
+            }
+            if (mPending.isEmpty()) {
+                mScheduled = false;
+            }else{
+                mExecutor.postDelayed(mDispatchTask, sMinInterval);
+            }
+        }
+        if (request != null) {
+            show(request);
+        }
+    }
+
+    private void show(Request request){
+        final int index = request.style.ordinal();
+        Slot slot = mSlots[index];
+        if (slot == null) {
+            slot = new Slot(mContext);
+            mSlots[index] = slot;
+        }
+        if (request.iconResId != 0) {
+            slot.icon.setVisibility(View.VISIBLE);
+            slot.icon.setImageResource(request.iconResId);
+        }else{
+            slot.icon.setVisibility(View.GONE);
+        }
+        // 复用的 View 中保留着上一次的文字，空内容也需要覆盖
+        slot.message.setText(request.message == null ? "" : request.message);
+        slot.toast.setDuration(request.duration);
+        slot.toast.show();
+    }
+}
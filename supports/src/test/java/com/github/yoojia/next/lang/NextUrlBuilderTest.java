@@ -0,0 +1,37 @@
+package com.github.yoojia.next.lang;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author YOOJIA.CHEN (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+public class NextUrlBuilderTest {
+
+    @Test
+    public void testPathSlashes(){
+        assertEquals("http://host/a/b", NextUrlBuilder.use("http://host").path("a").path("b").build());
+        assertEquals("http://host/a/b", NextUrlBuilder.use("http://host/").path("/a/").path("/b").build());
+        assertEquals("http://host/a/b", NextUrlBuilder.use("http://host").path("a//").path("b").build());
+        assertEquals("http://host/a/b", NextUrlBuilder.use("http://host").path("//a//", "//", "b//").build());
+    }
+
+    @Test
+    public void testQueryEncoding(){
+        assertEquals("http://host/v1?q=%E4%B8%AD%E6%96%87%20name&page=2&all=true",
+                NextUrlBuilder.use("http://host").path("v1/")
+                        .query("q", "中文 name")
+                        .query("page", 2)
+                        .query("all", true)
+                        .build());
+        assertEquals("http://host?a=1&b", NextUrlBuilder.use("http://host?a=1").query("b", null).build());
+    }
+
+    @Test
+    public void testReset(){
+        final NextUrlBuilder builder = NextUrlBuilder.use("http://host").path("a").query("k", "v");
+        assertEquals("http://other/b", builder.reset("http://other").path("b").build());
+    }
+}
@@ -0,0 +1,141 @@
+package com.github.yoojia.next.utils;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @author YOOJIA.CHEN (yoojia.chen@gmail.com)
+ * @since 2.3
+ */
+public class NextUnitTest {
+
+    private static String fixed(double value, int precision){
+        final StringBuilder out = new StringBuilder();
+        NextUnit.appendFixed(out, value, precision);
+        return out.toString();
+    }
+
+    private static void assertFixed(double value, int precision){
+        assertEquals(String.format(Locale.US, "%." + precision + "f", value), fixed(value, precision));
+    }
+
+    @Test
+    public void testAppendFixedRoundingBoundaries(){
+        final double[] values = {
+                0, 0.5, 1.5, 2.5, 0.05, 0.125, 0.375, 1.005, 2.675, 1.0005, 9.9995, 99.995, 999.9995,
+                0.0004999999999999999, 0.0005, 0.9999999, 4503599627370495.5, 1e17 + 0.5, 123456789.987654321
+        };
+        for (double value : values) {
+            for (int precision = 0; precision <= 6; precision++) {
+                assertFixed(value, precision);
+            }
+        }
+        // 舍入后进位到整数部分
+        assertEquals("10.00", fixed(9.999, 2));
+        assertEquals("1.000", fixed(0.9999999, 3));
+        assertEquals("0.001", fixed(0.0005, 3));
+    }
+
+    @Test
+    public void testAppendFixedMatchesStringFormat(){
+        final Random random = new Random(20161018L);
+        for (int i = 0; i < 100000; i++) {
+            final int precision = random.nextInt(7);
+            // 覆盖不同数量级，并包含刚好落在舍入边界上的值
+            final double value = i % 2 == 0
+                    ? random.nextDouble() * Math.pow(10, random.nextInt(16))
+                    : (random.nextInt(1000000) + 0.5) / Math.pow(10, precision + 1);
+            assertFixed(value, precision);
+        }
+    }
+
+    @Test
+    public void testFormatSingleUnit(){
+        final NextUnit kb = NextUnit.first("KB", 1024).setPrecision(2);
+        assertEquals("2KB", kb.format(2048.0));
+        assertEquals("1.50KB", kb.format(1536.0));
+        assertEquals("-1.50KB", kb.format(-1536.0));
+        assertEquals("0KB", kb.format(0.0));
+        assertEquals("1.50KB", kb.format(1536L));
+        assertEquals("0.00KB", kb.format(1L));
+        assertEquals("-9223372036854775808B", NextUnit.first("B").format(Long.MIN_VALUE));
+        assertEquals("9223372036854775807B", NextUnit.first("B").format(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testFormatMultiUnit(){
+        assertEquals("1h 20m 3s", NextUnits.DURATION.format(4803000L));
+        assertEquals("-1s 500ms", NextUnits.DURATION.format(-1500L));
+        assertEquals("1h 20m 3s", NextUnits.DURATION.format(4803000.0));
+        assertEquals("1GB 512MB", NextUnits.BYTES.format(1610612736L));
+        assertEquals("-106751991167d 7h 12m 55s 808ms", NextUnits.DURATION.format(Long.MIN_VALUE));
+        assertEquals("106751991167d 7h 12m 55s 807ms", NextUnits.DURATION.format(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testParse(){
+        assertEquals(4803000L, NextUnits.DURATION.parse("1h 20m 3s"));
+        assertEquals(4803000L, NextUnits.DURATION.parse("3s 20m 1h"));
+        assertEquals(4800000L, NextUnits.DURATION.parse("1 h 20 m"));
+        assertEquals(5000L, NextUnits.DURATION.parse(" 5 s "));
+        assertEquals(-1500L, NextUnits.DURATION.parse("-1s 500ms"));
+        assertEquals(1500L, NextUnits.DURATION.parse("1.5s"));
+        assertEquals(1536L, NextUnits.BYTES.parse("1.5KB"));
+        assertEquals(1610612736L, NextUnits.BYTES.parse("1GB 512MB"));
+        // 最长匹配单位名，"ms" 不会被当作 "m"
+        assertEquals(61001L, NextUnits.DURATION.parse("1m1s1ms"));
+    }
+
+    @Test
+    public void testParseRoundTrip(){
+        final NextUnit[] units = {NextUnits.DURATION, NextUnits.BYTES, NextUnits.DISTANCE};
+        final long[] edges = {0, 1, -1, 999, 1000, 59999, 86400000, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1};
+        final Random random = new Random(20161018L);
+        for (NextUnit unit : units) {
+            for (long value : edges) {
+                assertEquals(value, unit.parse(unit.format(value)));
+            }
+            for (int i = 0; i < 10000; i++) {
+                final long value = random.nextLong() >> random.nextInt(64);
+                assertEquals(value, unit.parse(unit.format(value)));
+            }
+        }
+    }
+
+    @Test
+    public void testParseOverflow(){
+        assertEquals(Long.MIN_VALUE, NextUnits.DURATION.parse("-9223372036854775808ms"));
+        assertEquals(Long.MAX_VALUE, NextUnits.DURATION.parse("9223372036854775807ms"));
+        assertParseError(NextUnits.DURATION, "9223372036854775808ms");
+        assertParseError(NextUnits.DURATION, "-9223372036854775809ms");
+        assertParseError(NextUnits.DURATION, "106751991168d");
+        assertParseError(NextUnits.DURATION, "106751991167d 7h 12m 55s 808ms");
+        assertParseError(NextUnits.DURATION, "99999999999999999999ms");
+    }
+
+    @Test
+    public void testParseError(){
+        assertParseError(NextUnits.DURATION, null);
+        assertParseError(NextUnits.DURATION, "");
+        assertParseError(NextUnits.DURATION, "   ");
+        assertParseError(NextUnits.DURATION, "5");
+        assertParseError(NextUnits.DURATION, "5x");
+        assertParseError(NextUnits.DURATION, "s");
+        assertParseError(NextUnits.DURATION, ".s");
+        assertParseError(NextUnits.DURATION, "1h abc");
+    }
+
+    private static void assertParseError(NextUnit unit, String input){
+        try {
+            unit.parse(input);
+            fail("Expected IllegalArgumentException: " + input);
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+}